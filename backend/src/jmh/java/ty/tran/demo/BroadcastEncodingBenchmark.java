@@ -0,0 +1,111 @@
+package ty.tran.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import ty.tran.demo.DTO.ConversationDTO;
+import ty.tran.demo.DTO.ConversationMemberDTO;
+import ty.tran.demo.Entity.Conversation;
+import ty.tran.demo.Entity.ConversationMember;
+import ty.tran.demo.Implements.PreEncodedBroadcaster;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of a conversation update to every member of a group: convertAndSendToUser per member
+ * (one Jackson pass each) against one encode() plus a send() per member.
+ *
+ * Run with ./gradlew jmh; the gc profiler reports bytes allocated per fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastEncodingBenchmark {
+
+    @Param({"500"})
+    public int members;
+
+    private SimpMessagingTemplate messagingTemplate;
+    private PreEncodedBroadcaster broadcaster;
+    private ConversationDTO conversation;
+    private List<UUID> recipients;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+
+        // Stands in for the broker channel: accepts and drops every message
+        MessageChannel channel = (Message<?> message, long timeout) -> true;
+        messagingTemplate = new SimpMessagingTemplate(channel);
+        messagingTemplate.setMessageConverter(converter);
+        broadcaster = new PreEncodedBroadcaster(messagingTemplate, objectMapper, new SimpleMeterRegistry());
+
+        recipients = new ArrayList<>(members);
+        List<ConversationMemberDTO> memberList = new ArrayList<>(members);
+        Instant now = Instant.now();
+        for (int i = 0; i < members; i++) {
+            UUID userId = UUID.randomUUID();
+            recipients.add(userId);
+            memberList.add(ConversationMemberDTO.builder()
+                    .userId(userId)
+                    .username("member_" + i)
+                    .displayName("Member " + i)
+                    .role(ConversationMember.MemberRole.member)
+                    .joinedAt(now)
+                    .lastSeenAt(now)
+                    .build());
+        }
+        conversation = ConversationDTO.builder()
+                .id(UUID.randomUUID())
+                .type(Conversation.ConversationType.group)
+                .title("Benchmark group")
+                .createdById(recipients.get(0))
+                .createdByUsername("member_0")
+                .createdAt(now)
+                .updatedAt(now)
+                .members(memberList)
+                .build();
+    }
+
+    @Benchmark
+    public void convertPerRecipient() {
+        for (UUID recipientId : recipients) {
+            messagingTemplate.convertAndSendToUser(recipientId.toString(), "/queue/conversations", conversation);
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce(Blackhole blackhole) {
+        Message<byte[]> encoded = broadcaster.encode(conversation);
+        for (UUID recipientId : recipients) {
+            broadcaster.sendToUser(recipientId, "/queue/conversations", encoded);
+        }
+        blackhole.consume(encoded);
+    }
+}
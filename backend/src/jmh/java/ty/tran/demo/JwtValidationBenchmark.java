@@ -0,0 +1,78 @@
+package ty.tran.demo;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ty.tran.demo.Services.JwtService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What JwtAuthenticationFilter pays per request to validate a token: a verified-token cache
+ * lookup, against a signature check and claims parse on every call.
+ *
+ * Requests pick from a pool of live tokens, one per active user. Run with ./gradlew jmh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-that-is-long-enough-for-hs256";
+
+    @Param({"10000"})
+    public int activeUsers;
+
+    private JwtService jwtService;
+    private JwtParser parser;
+    private String[] tokens;
+    private String[] usernames;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(new SimpleMeterRegistry(), SECRET, 86400000L, 604800000L, 100000L);
+        // The same key JwtService derives from a secret of at least 256 bits
+        parser = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build();
+
+        tokens = new String[activeUsers];
+        usernames = new String[activeUsers];
+        for (int i = 0; i < activeUsers; i++) {
+            usernames[i] = "user" + i + "@example.com";
+            tokens[i] = jwtService.generateToken(usernames[i]);
+            jwtService.extractUsername(tokens[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean cachedValidate() {
+        int i = ThreadLocalRandom.current().nextInt(activeUsers);
+        return usernames[i].equals(jwtService.extractUsername(tokens[i]));
+    }
+
+    @Benchmark
+    public boolean parsePerCall() {
+        int i = ThreadLocalRandom.current().nextInt(activeUsers);
+        return usernames[i].equals(parser.parseSignedClaims(tokens[i]).getPayload().getSubject());
+    }
+}
@@ -0,0 +1,88 @@
+package ty.tran.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+import ty.tran.demo.Config.ConversationSubscriptionRegistry;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broker dispatch lookup (findSubscriptions for one conversation topic) as the total number of
+ * subscriptions grows: 10 per session, 20 sessions per conversation. The conversation registry
+ * should stay flat; the default registry degrades once destinations exceed its cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SubscriptionRegistryBenchmark {
+
+    private static final int SUBSCRIPTIONS_PER_SESSION = 10;
+    private static final int SESSIONS_PER_CONVERSATION = 20;
+
+    @Param({"10000", "100000", "1000000"})
+    public int subscriptions;
+
+    @Param({"conversation", "default"})
+    public String registry;
+
+    private SubscriptionRegistry subscriptionRegistry;
+    private Message<?>[] messages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        subscriptionRegistry = registry.equals("conversation")
+                ? new ConversationSubscriptionRegistry(new SimpleMeterRegistry())
+                : new DefaultSubscriptionRegistry();
+
+        int sessions = subscriptions / SUBSCRIPTIONS_PER_SESSION;
+        int conversations = subscriptions / SESSIONS_PER_CONVERSATION;
+        String[] destinations = new String[conversations];
+        for (int i = 0; i < conversations; i++) {
+            destinations[i] = "/topic/conversation/" + UUID.randomUUID();
+        }
+        for (int s = 0; s < sessions; s++) {
+            for (int k = 0; k < SUBSCRIPTIONS_PER_SESSION; k++) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+                accessor.setSessionId("session-" + s);
+                accessor.setSubscriptionId("sub-" + k);
+                accessor.setDestination(destinations[(s * SUBSCRIPTIONS_PER_SESSION + k) % conversations]);
+                subscriptionRegistry.registerSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+            }
+        }
+
+        messages = new Message<?>[conversations];
+        for (int i = 0; i < conversations; i++) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destinations[i]);
+            messages[i] = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        }
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> findSubscriptions() {
+        return subscriptionRegistry.findSubscriptions(messages[ThreadLocalRandom.current().nextInt(messages.length)]);
+    }
+}
@@ -0,0 +1,45 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for room in a full executor queue instead of running the task on the submitting thread.
+ * Single-threaded executors that promise ordering need this: a caller-run task would overtake
+ * everything still queued. Time spent waiting is recorded so a stalled consumer shows up.
+ */
+public class BlockingEnqueuePolicy implements RejectedExecutionHandler {
+
+    private final Timer blocked;
+
+    public BlockingEnqueuePolicy(String executor, MeterRegistry meterRegistry) {
+        this.blocked = Timer.builder("chat.executor.blocked").tag("executor", executor)
+                .description("Time submitters waited for room in a full queue")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+        } finally {
+            blocked.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        // Shut down while we waited: the task would never run
+        if (executor.isShutdown() && executor.getQueue().remove(task)) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ty.tran.demo.Config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import ty.tran.demo.Event.ClusterEnvelope;
+import ty.tran.demo.Services.ClusterBus;
+
+import java.util.UUID;
+
+/**
+ * Bridges the node-local simple broker to the cluster bus. Every frame the server sends to a
+ * topic or user destination is also published to the other nodes, which replay it into their
+ * own broker channel; user destinations are then resolved against that node's sessions.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterBrokerInterceptor implements ChannelInterceptor {
+
+    // Set on replayed frames so they are not published again
+    static final String ORIGIN_HEADER = "clusterOrigin";
+
+    private final ClusterBus clusterBus;
+    private final MessageChannel brokerChannel;
+
+    public ClusterBrokerInterceptor(ClusterBus clusterBus, @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.clusterBus = clusterBus;
+        this.brokerChannel = brokerChannel;
+        clusterBus.subscribe(this::replay);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.containsKey(ORIGIN_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        // Session-resolved destinations (/queue/...-user{session}) only mean something on this node
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !(destination.startsWith("/topic/") || destination.startsWith("/user/"))) {
+            return message;
+        }
+        MimeType contentType = SimpMessageHeaderAccessor.wrap(message).getContentType();
+        clusterBus.publish(new ClusterEnvelope(UUID.randomUUID(), clusterBus.nodeId(), destination,
+                contentType != null ? contentType.toString() : null, payload));
+        return message;
+    }
+
+    private void replay(ClusterEnvelope envelope) {
+        if (envelope.isCacheInvalidation()) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.destination());
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+        }
+        accessor.setHeader(ORIGIN_HEADER, envelope.nodeId());
+        try {
+            brokerChannel.send(MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Error replaying cluster frame for {}: {}", envelope.destination(), e.getMessage());
+        }
+    }
+}
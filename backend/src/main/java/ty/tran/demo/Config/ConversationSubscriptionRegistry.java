@@ -0,0 +1,158 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscription registry for the simple broker, built for exact destinations such as
+ * /topic/conversation/{id}, its /typing, /read and /presence sub-topics and resolved user queues.
+ *
+ * Each destination maps to a copy-on-write array of subscribers, so dispatch is one hash lookup
+ * plus a walk over that destination's own subscribers, whatever the total number of subscriptions.
+ * A per-session index makes unsubscribe and disconnect proportional to the session's own
+ * subscriptions. Pattern subscriptions (rare here) are delegated to Spring's default registry,
+ * which is only consulted while at least one exists.
+ */
+@Component
+public class ConversationSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final Subscriber[] NONE = new Subscriber[0];
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    // destination -> subscribers; arrays are never mutated once published
+    private final ConcurrentHashMap<String, Subscriber[]> byDestination = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destination)
+    private final ConcurrentHashMap<String, Map<String, String>> bySession = new ConcurrentHashMap<>();
+    private final DefaultSubscriptionRegistry patternRegistry = new DefaultSubscriptionRegistry();
+    private final AtomicInteger patternSubscriptions = new AtomicInteger();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    public ConversationSubscriptionRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.broker.subscriptions", subscriptions, AtomicInteger::get)
+                .description("STOMP subscriptions held by the simple broker").register(meterRegistry);
+        Gauge.builder("chat.broker.destinations", byDestination, Map::size)
+                .description("Exact destinations with at least one subscriber").register(meterRegistry);
+    }
+
+    @Override
+    protected void addSubscriptionInternal(
+            @NonNull String sessionId, @NonNull String subscriptionId, @NonNull String destination, @NonNull Message<?> message) {
+        String previous = bySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            // A client reusing a subscription id replaces the earlier subscription
+            removeSubscriber(sessionId, subscriptionId, previous);
+        }
+        subscriptions.incrementAndGet();
+        if (pathMatcher.isPattern(destination)) {
+            patternSubscriptions.incrementAndGet();
+            patternRegistry.registerSubscription(message);
+            return;
+        }
+        Subscriber subscriber = new Subscriber(sessionId, subscriptionId);
+        byDestination.compute(destination, (key, current) -> {
+            if (current == null) {
+                return new Subscriber[] { subscriber };
+            }
+            Subscriber[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscriber;
+            return updated;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(@NonNull String sessionId, @NonNull String subscriptionId, @NonNull Message<?> message) {
+        Map<String, String> sessionSubscriptions = bySession.get(sessionId);
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        String destination = sessionSubscriptions.remove(subscriptionId);
+        if (destination != null) {
+            removeSubscriber(sessionId, subscriptionId, destination);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(@NonNull String sessionId) {
+        Map<String, String> sessionSubscriptions = bySession.remove(sessionId);
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        boolean hadPatterns = false;
+        for (Map.Entry<String, String> entry : sessionSubscriptions.entrySet()) {
+            if (pathMatcher.isPattern(entry.getValue())) {
+                hadPatterns = true;
+                patternSubscriptions.decrementAndGet();
+            } else {
+                removeExact(entry.getValue(), sessionId, entry.getKey());
+            }
+            subscriptions.decrementAndGet();
+        }
+        if (hadPatterns) {
+            patternRegistry.unregisterAllSubscriptions(sessionId);
+        }
+    }
+
+    @Override
+    @NonNull
+    protected MultiValueMap<String, String> findSubscriptionsInternal(@NonNull String destination, @NonNull Message<?> message) {
+        Subscriber[] subscribers = byDestination.getOrDefault(destination, NONE);
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>(subscribers.length);
+        for (Subscriber subscriber : subscribers) {
+            result.add(subscriber.sessionId(), subscriber.subscriptionId());
+        }
+        if (patternSubscriptions.get() > 0) {
+            patternRegistry.findSubscriptions(message).forEach(result::addAll);
+        }
+        return result;
+    }
+
+    private void removeSubscriber(String sessionId, String subscriptionId, String destination) {
+        if (pathMatcher.isPattern(destination)) {
+            patternSubscriptions.decrementAndGet();
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId(subscriptionId);
+            patternRegistry.unregisterSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        } else {
+            removeExact(destination, sessionId, subscriptionId);
+        }
+        subscriptions.decrementAndGet();
+    }
+
+    private void removeExact(String destination, String sessionId, String subscriptionId) {
+        byDestination.computeIfPresent(destination, (key, current) -> {
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].sessionId().equals(sessionId) && current[i].subscriptionId().equals(subscriptionId)) {
+                    if (current.length == 1) {
+                        return null;
+                    }
+                    Subscriber[] updated = new Subscriber[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    return updated;
+                }
+            }
+            return current;
+        });
+    }
+
+    private record Subscriber(String sessionId, String subscriptionId) {
+    }
+}
@@ -0,0 +1,54 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures a channel executor from the outside, so the same metrics work for platform pools and
+ * virtual threads: tasks waiting to start, tasks running, time spent waiting and time spent running.
+ */
+public class InstrumentedTaskDecorator implements TaskDecorator {
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+
+    public InstrumentedTaskDecorator(String channel, MeterRegistry meterRegistry) {
+        Gauge.builder("chat.stomp.channel.queued", queued, AtomicInteger::get).tag("channel", channel)
+                .description("Messages waiting for an executor thread").register(meterRegistry);
+        Gauge.builder("chat.stomp.channel.active", active, AtomicInteger::get).tag("channel", channel)
+                .description("Messages being handled").register(meterRegistry);
+        this.waitTimer = Timer.builder("chat.stomp.channel.wait").tag("channel", channel)
+                .description("Time from submission until a thread picked the message up")
+                .publishPercentiles(0.5, 0.99).register(meterRegistry);
+        this.executionTimer = Timer.builder("chat.stomp.channel.execution").tag("channel", channel)
+                .description("Time spent handling a message")
+                .publishPercentiles(0.5, 0.99).register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public Runnable decorate(@NonNull Runnable task) {
+        long submittedAt = System.nanoTime();
+        queued.incrementAndGet();
+        return () -> {
+            long startedAt = System.nanoTime();
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+}
@@ -0,0 +1,316 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound queue for one WebSocket session, with byte and frame budgets and priority classes.
+ *
+ * sendMessage only enqueues; a writer task drains the queue highest class first, so a slow client
+ * never holds up the outbound channel. When a budget is exceeded the session sheds queued typing
+ * frames, then presence frames; if chat or signaling frames alone still exceed it, the session
+ * is closed with {@link #RESYNC} and the client reconnects and reloads what it missed.
+ *
+ * A regular close drops only the droppable classes and gives the writer a short deadline to
+ * flush the rest, so an ERROR or RECEIPT frame queued just before the close still arrives.
+ */
+@Slf4j
+public class PrioritizedSessionDecorator extends WebSocketSessionDecorator {
+
+    // Application close code telling the client that frames were lost and it must refetch
+    public static final CloseStatus RESYNC = new CloseStatus(4008, "resync");
+
+    /** Declared highest priority first. */
+    enum FrameClass {
+        CONTROL(false),
+        SIGNALING(false),
+        CHAT(false),
+        PRESENCE(true),
+        TYPING(true);
+
+        final boolean droppable;
+
+        FrameClass(boolean droppable) {
+            this.droppable = droppable;
+        }
+    }
+
+    private final TaskExecutor writer;
+    private final long maxBytes;
+    private final int maxFrames;
+    private final Duration closeDrainTimeout;
+    private final DistributionSummary depth;
+    private final Map<FrameClass, Counter> shed;
+    private final Counter overflows;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled whenever the writer stops, so close can wait for queued frames to go out
+    private final Condition drainStopped = lock.newCondition();
+    private final EnumMap<FrameClass, ArrayDeque<Frame>> queues = new EnumMap<>(FrameClass.class);
+    private long queuedBytes;
+    private int queuedFrames;
+    private boolean draining;
+    private boolean closed;
+
+    PrioritizedSessionDecorator(WebSocketSession session, TaskExecutor writer, long maxBytes, int maxFrames,
+            Duration closeDrainTimeout, DistributionSummary depth, Map<FrameClass, Counter> shed, Counter overflows) {
+        super(session);
+        this.writer = writer;
+        this.maxBytes = maxBytes;
+        this.maxFrames = maxFrames;
+        this.closeDrainTimeout = closeDrainTimeout;
+        this.depth = depth;
+        this.shed = shed;
+        this.overflows = overflows;
+        for (FrameClass frameClass : FrameClass.values()) {
+            queues.put(frameClass, new ArrayDeque<>());
+        }
+    }
+
+    @Override
+    public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+        Frame frame = Frame.of(message);
+        boolean startDrain;
+        boolean overflowed;
+        int depthAfter;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (frame.frameClass() == FrameClass.TYPING) {
+                // Typing frames carry the whole state of the conversation, so only the newest matters
+                removeQueued(FrameClass.TYPING, frame.destination());
+            }
+            queues.get(frame.frameClass()).addLast(frame);
+            queuedBytes += frame.bytes();
+            queuedFrames++;
+            shedUntilWithinBudget();
+            overflowed = overBudget();
+            if (overflowed) {
+                closed = true;
+                clearQueues();
+                startDrain = false;
+            } else {
+                startDrain = !draining;
+                draining = true;
+            }
+            depthAfter = queuedFrames;
+        } finally {
+            lock.unlock();
+        }
+
+        depth.record(depthAfter);
+        if (overflowed) {
+            overflows.increment();
+            log.warn("Closing slow WebSocket session {}: outbound queue over budget", getId());
+            closeQuietly(RESYNC);
+        } else if (startDrain) {
+            writer.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void close(@NonNull CloseStatus status) throws IOException {
+        boolean startDrain;
+        lock.lock();
+        try {
+            closed = true;
+            dropDroppable();
+            startDrain = queuedFrames > 0 && !draining;
+            if (startDrain) {
+                draining = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (startDrain) {
+            writer.execute(this::drain);
+        }
+
+        lock.lock();
+        try {
+            long remaining = closeDrainTimeout.toNanos();
+            while (draining && remaining > 0) {
+                remaining = drainStopped.awaitNanos(remaining);
+            }
+            if (queuedFrames > 0) {
+                log.debug("Closing WebSocket session {} with {} frames unsent", getId(), queuedFrames);
+            }
+            clearQueues();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            clearQueues();
+        } finally {
+            lock.unlock();
+        }
+        super.close(status);
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            lock.lock();
+            try {
+                frame = poll();
+                if (frame == null) {
+                    draining = false;
+                    drainStopped.signalAll();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                getDelegate().sendMessage(frame.message());
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to write to WebSocket session {}: {}", getId(), e.getMessage());
+                lock.lock();
+                try {
+                    closed = true;
+                    clearQueues();
+                    draining = false;
+                    drainStopped.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+        }
+    }
+
+    private Frame poll() {
+        for (ArrayDeque<Frame> queue : queues.values()) {
+            Frame frame = queue.pollFirst();
+            if (frame != null) {
+                queuedBytes -= frame.bytes();
+                queuedFrames--;
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    // Drops the oldest frames of the lowest droppable class first
+    private void shedUntilWithinBudget() {
+        FrameClass[] classes = FrameClass.values();
+        for (int i = classes.length - 1; i >= 0 && overBudget(); i--) {
+            if (!classes[i].droppable) {
+                continue;
+            }
+            ArrayDeque<Frame> queue = queues.get(classes[i]);
+            while (overBudget() && !queue.isEmpty()) {
+                Frame dropped = queue.pollFirst();
+                queuedBytes -= dropped.bytes();
+                queuedFrames--;
+                shed.get(classes[i]).increment();
+            }
+        }
+    }
+
+    private void dropDroppable() {
+        for (FrameClass frameClass : FrameClass.values()) {
+            if (!frameClass.droppable) {
+                continue;
+            }
+            ArrayDeque<Frame> queue = queues.get(frameClass);
+            while (!queue.isEmpty()) {
+                Frame dropped = queue.pollFirst();
+                queuedBytes -= dropped.bytes();
+                queuedFrames--;
+                shed.get(frameClass).increment();
+            }
+        }
+    }
+
+    private void removeQueued(FrameClass frameClass, String destination) {
+        Iterator<Frame> it = queues.get(frameClass).iterator();
+        while (it.hasNext()) {
+            Frame queued = it.next();
+            if (queued.destination().equals(destination)) {
+                it.remove();
+                queuedBytes -= queued.bytes();
+                queuedFrames--;
+                shed.get(frameClass).increment();
+            }
+        }
+    }
+
+    private boolean overBudget() {
+        return queuedBytes > maxBytes || queuedFrames > maxFrames;
+    }
+
+    private void clearQueues() {
+        queues.values().forEach(ArrayDeque::clear);
+        queuedBytes = 0;
+        queuedFrames = 0;
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            getDelegate().close(status);
+        } catch (IOException e) {
+            log.debug("Error closing WebSocket session {}: {}", getId(), e.getMessage());
+        }
+    }
+
+    private record Frame(WebSocketMessage<?> message, FrameClass frameClass, String destination, int bytes) {
+
+        static Frame of(WebSocketMessage<?> message) {
+            if (!(message instanceof TextMessage text)) {
+                return new Frame(message, FrameClass.CHAT, "", message.getPayloadLength());
+            }
+            String payload = text.getPayload();
+            String destination = header(payload, "destination");
+            return new Frame(message, classify(payload, destination), destination, message.getPayloadLength());
+        }
+
+        private static FrameClass classify(String payload, String destination) {
+            if (!payload.startsWith("MESSAGE\n")) {
+                // CONNECTED, RECEIPT, ERROR and heart-beats
+                return FrameClass.CONTROL;
+            }
+            if (destination.contains("/call-events")) {
+                return FrameClass.SIGNALING;
+            }
+            if (destination.endsWith("/typing")) {
+                return FrameClass.TYPING;
+            }
+            if (destination.endsWith("/presence")) {
+                return FrameClass.PRESENCE;
+            }
+            return FrameClass.CHAT;
+        }
+
+        // Reads one header from the encoded STOMP frame, stopping at the blank line before the body
+        private static String header(String payload, String name) {
+            String prefix = "\n" + name + ":";
+            int headersEnd = payload.indexOf("\n\n");
+            int start = payload.indexOf(prefix);
+            if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+                return "";
+            }
+            start += prefix.length();
+            int end = payload.indexOf('\n', start);
+            return end < 0 ? payload.substring(start) : payload.substring(start, end);
+        }
+    }
+}
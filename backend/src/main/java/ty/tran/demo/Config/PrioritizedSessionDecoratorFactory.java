@@ -0,0 +1,73 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Gives every WebSocket session its own prioritized, budgeted outbound queue
+ * (see {@link PrioritizedSessionDecorator}). Queues are drained on virtual threads, since a
+ * writer blocks for as long as its client is slow.
+ */
+@Component
+public class PrioritizedSessionDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final SimpleAsyncTaskExecutor writer = new SimpleAsyncTaskExecutor("ws-writer-");
+    private final long maxBytes;
+    private final int maxFrames;
+    private final Duration closeDrainTimeout;
+    private final DistributionSummary depth;
+    private final Map<PrioritizedSessionDecorator.FrameClass, Counter> shed =
+            new EnumMap<>(PrioritizedSessionDecorator.FrameClass.class);
+    private final Counter overflows;
+
+    public PrioritizedSessionDecoratorFactory(
+            MeterRegistry meterRegistry,
+            @Value("${chat.ws.outbound.max-bytes:1048576}") long maxBytes,
+            @Value("${chat.ws.outbound.max-frames:2000}") int maxFrames,
+            @Value("${chat.ws.outbound.close-drain-timeout-ms:1000}") long closeDrainTimeoutMs) {
+        this.maxBytes = maxBytes;
+        this.maxFrames = maxFrames;
+        this.closeDrainTimeout = Duration.ofMillis(closeDrainTimeoutMs);
+        writer.setVirtualThreads(true);
+        this.depth = DistributionSummary.builder("chat.ws.outbound.queue.depth")
+                .description("Frames queued for a session, sampled on every send")
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(1, 10, 100, 1000)
+                .register(meterRegistry);
+        for (PrioritizedSessionDecorator.FrameClass frameClass : PrioritizedSessionDecorator.FrameClass.values()) {
+            shed.put(frameClass, Counter.builder("chat.ws.outbound.shed")
+                    .tag("class", frameClass.name().toLowerCase())
+                    .description("Queued frames dropped or collapsed for a slow session")
+                    .register(meterRegistry));
+        }
+        this.overflows = Counter.builder("chat.ws.outbound.overflows")
+                .description("Sessions closed with a resync hint because they could not keep up")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(
+                        new PrioritizedSessionDecorator(session, writer, maxBytes, maxFrames, closeDrainTimeout,
+                                depth, shed, overflows));
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package ty.tran.demo.Config;
+
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import ty.tran.demo.Implements.StompReplayLog;
+
+/**
+ * Broker-channel side of reconnect replay: records conversation-topic and user-queue frames in the
+ * replay log and stamps each with its position, which clients present again when they resubscribe.
+ * User destinations are recorded once, as /user/{userId}/..., before they are resolved to sessions.
+ */
+@Component
+public class ReplayRecordingInterceptor implements ChannelInterceptor {
+
+    static final String POSITION_HEADER = "replay-pos";
+
+    private final StompReplayLog replayLog;
+
+    public ReplayRecordingInterceptor(StompReplayLog replayLog) {
+        this.replayLog = replayLog;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !isReplayable(destination)) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(POSITION_HEADER, replayLog.record(destination, payload, accessor.getContentType()));
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    // Typing is stale by the time anyone reconnects, and replayed call signaling would ring old calls
+    static boolean isReplayable(String destination) {
+        if (destination.startsWith("/topic/conversation/")) {
+            return !destination.endsWith("/typing");
+        }
+        return destination.startsWith("/user/")
+                && !destination.endsWith("/queue/call-events")
+                && !destination.endsWith("/queue/errors");
+    }
+}
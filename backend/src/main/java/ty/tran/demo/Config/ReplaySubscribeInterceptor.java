@@ -0,0 +1,151 @@
+package ty.tran.demo.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import ty.tran.demo.Implements.StompReplayLog;
+import ty.tran.demo.Services.ConversationAccessService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Inbound side of reconnect replay. A SUBSCRIBE carrying a replay-from header (the last position
+ * the client saw) is answered, once the broker has registered the subscription, with the frames
+ * recorded since then, sent straight to that subscription. When they are no longer available the
+ * client gets a single frame with replay-resync and refetches instead. Frames published while the
+ * replay runs may arrive twice; clients drop positions they have already seen.
+ */
+@Component
+@Slf4j
+public class ReplaySubscribeInterceptor implements ExecutorChannelInterceptor {
+
+    static final String REPLAY_FROM_HEADER = "replay-from";
+    static final String RESYNC_HEADER = "replay-resync";
+    private static final byte[] EMPTY_OBJECT = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final String CONVERSATION_PREFIX = "/topic/conversation/";
+
+    private final StompReplayLog replayLog;
+    private final ConversationAccessService conversationAccessService;
+    private final MessageChannel clientOutboundChannel;
+    private final Counter replayed;
+    private final Counter resyncs;
+
+    public ReplaySubscribeInterceptor(
+            StompReplayLog replayLog,
+            ConversationAccessService conversationAccessService,
+            @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            MeterRegistry meterRegistry) {
+        this.replayLog = replayLog;
+        this.conversationAccessService = conversationAccessService;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.replayed = Counter.builder("chat.replay.frames")
+                .description("Frames replayed to resubscribing clients").register(meterRegistry);
+        this.resyncs = Counter.builder("chat.replay.resyncs")
+                .description("Resubscribes that were too far behind to replay").register(meterRegistry);
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+            @NonNull MessageHandler handler, @Nullable Exception ex) {
+        // Only once the handler that registers the subscription has run
+        if (ex != null || !(handler instanceof SimpleBrokerMessageHandler || handler instanceof UserDestinationMessageHandler)) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.SUBSCRIBE) {
+            return;
+        }
+        String from = accessor.getFirstNativeHeader(REPLAY_FROM_HEADER);
+        String destination = accessor.getDestination();
+        if (from == null || destination == null) {
+            return;
+        }
+        boolean userDestination = destination.startsWith("/user/");
+        if (userDestination != (handler instanceof UserDestinationMessageHandler)) {
+            return;
+        }
+        String logDestination = userDestination ? userLogDestination(accessor, destination) : destination;
+        if (logDestination == null || !ReplayRecordingInterceptor.isReplayable(logDestination)) {
+            return;
+        }
+        // The broker does not authorize SUBSCRIBE, so history is only replayed to members
+        if (!userDestination && !isMember(accessor, destination)) {
+            log.warn("Refusing replay of {} to non-member session {}", destination, accessor.getSessionId());
+            return;
+        }
+
+        List<StompReplayLog.Frame> missed = replayLog.since(logDestination, from);
+        if (missed == null) {
+            resyncs.increment();
+            send(accessor, destination, EMPTY_OBJECT, MimeTypeUtils.APPLICATION_JSON, RESYNC_HEADER, "true");
+            return;
+        }
+        for (StompReplayLog.Frame frame : missed) {
+            send(accessor, destination, frame.payload(), frame.contentType(),
+                    ReplayRecordingInterceptor.POSITION_HEADER, frame.position());
+        }
+        replayed.increment(missed.size());
+    }
+
+    private boolean isMember(SimpMessageHeaderAccessor accessor, String destination) {
+        Object userId = accessor.getSessionAttributes() != null ? accessor.getSessionAttributes().get("userId") : null;
+        if (!(userId instanceof UUID) || !destination.startsWith(CONVERSATION_PREFIX)) {
+            return false;
+        }
+        try {
+            // Also covers the conversation's /read and /presence topics
+            String rest = destination.substring(CONVERSATION_PREFIX.length());
+            int slash = rest.indexOf('/');
+            UUID conversationId = UUID.fromString(slash < 0 ? rest : rest.substring(0, slash));
+            return conversationAccessService.getAccess(conversationId, (UUID) userId)
+                    .filter(ConversationAccessService.ConversationAccess::isAllowed)
+                    .isPresent();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // /user/queue/inbox subscribed by user X was recorded as /user/X/queue/inbox
+    private static String userLogDestination(SimpMessageHeaderAccessor accessor, String destination) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object userId = attributes != null ? attributes.get("userId") : null;
+        return userId != null ? "/user/" + userId + destination.substring("/user".length()) : null;
+    }
+
+    private void send(SimpMessageHeaderAccessor subscribe, String destination, byte[] payload, MimeType contentType,
+            String header, String value) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscribe.getSessionId());
+        accessor.setSubscriptionId(subscribe.getSubscriptionId());
+        accessor.setDestination(destination);
+        if (contentType != null) {
+            accessor.setContentType(contentType);
+        }
+        accessor.setNativeHeader(header, value);
+        accessor.setLeaveMutable(true);
+        try {
+            clientOutboundChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.warn("Error replaying to session {}: {}", subscribe.getSessionId(), e.getMessage());
+        }
+    }
+}
@@ -11,8 +11,8 @@ import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.lang.NonNull;
 
-import ty.tran.demo.DAO.UserDAO;
-import ty.tran.demo.Entity.User;
+import ty.tran.demo.DTO.AuthenticatedUser;
+import ty.tran.demo.Services.AuthenticatedUserService;
 import ty.tran.demo.Services.JwtService;
 
 import java.util.Map;
@@ -26,7 +26,7 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
     private JwtService jwtService;
 
     @Autowired
-    private UserDAO userDAO;
+    private AuthenticatedUserService authenticatedUserService;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -42,9 +42,10 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                         return message;
                     }
                     String userEmail = jwtService.extractUsername(token);
-                    if (jwtService.isTokenValid(token, userEmail)) {
-                        User user = userDAO.findByEmail(userEmail).orElse(null);
-                        if (user != null) {
+                    // Null unless the token is signed by us and unexpired
+                    if (userEmail != null) {
+                        AuthenticatedUser user = authenticatedUserService.findByEmail(userEmail);
+                        if (user != null && user.isActive()) {
                             Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
                             if (sessionAttributes != null) {
                                 sessionAttributes.put("userId", user.getId());
@@ -52,7 +53,7 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                                 log.info("Session attributes set: userId = {}", sessionAttributes.get("userId"));
                             }
                         } else {
-                            log.error("User not found for email: {}", userEmail);
+                            log.error("No active user for email: {}", userEmail);
                         }
                     } else {
                         log.error("Invalid JWT token");
@@ -1,12 +1,23 @@
 package ty.tran.demo.Config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.http.server.ServerHttpRequest;
@@ -15,6 +26,7 @@ import org.springframework.lang.NonNull;
 import java.security.Principal;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -23,15 +35,55 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private WebSocketAuthInterceptor webSocketAuthInterceptor;
 
+    // Present only with chat.cluster.enabled=true
+    @Autowired(required = false)
+    private ClusterBrokerInterceptor clusterBrokerInterceptor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ConversationSubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private PrioritizedSessionDecoratorFactory prioritizedSessionDecoratorFactory;
+
+    @Autowired
+    private ReplayRecordingInterceptor replayRecordingInterceptor;
+
+    @Autowired
+    private ReplaySubscribeInterceptor replaySubscribeInterceptor;
+
+    @Value("${chat.stomp.inbound.virtual-threads:true}")
+    private boolean inboundVirtualThreads;
+
+    // Upper bound on inbound messages handled at once; with virtual threads this is what protects the DB pool
+    @Value("${chat.stomp.inbound.max-concurrency:512}")
+    private int inboundMaxConcurrency;
+
+    @Value("${chat.stomp.outbound.pool-size:8}")
+    private int outboundPoolSize;
+
+    @Value("${chat.stomp.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // Frames to one session leave in the order they were sent, even with a multi-threaded outbound pool
+        config.setPreservePublishOrder(true);
+        config.configureBrokerChannel().interceptors(replayRecordingInterceptor);
+        if (clusterBrokerInterceptor != null) {
+            config.configureBrokerChannel().interceptors(clusterBrokerInterceptor);
+        }
     }
 
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        // Frames from one session are handled in the order they arrived, even on virtual threads
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOrigins("http://localhost:3000") // CORS cho React
                 .setHandshakeHandler(new CustomHandshakeHandler())
@@ -41,9 +93,66 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setDisconnectDelay(30 * 1000);
     }
 
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        // Per-session budgets and shedding live in the decorator; it never blocks the outbound channel
+        registration.addDecoratorFactory(prioritizedSessionDecoratorFactory);
+    }
+
     @Override
     public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
-        registration.interceptors(webSocketAuthInterceptor);
+        registration.interceptors(webSocketAuthInterceptor, replaySubscribeInterceptor);
+        registration.executor(stompInboundExecutor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        registration.executor(stompOutboundExecutor());
+    }
+
+    // SimpleBrokerRegistration has no hook for the registry, so it is swapped in before the broker starts
+    @Bean
+    public SmartInitializingSingleton subscriptionRegistryInstaller(
+            @Qualifier("simpleBrokerMessageHandler") AbstractBrokerMessageHandler brokerMessageHandler) {
+        return () -> {
+            if (brokerMessageHandler instanceof SimpleBrokerMessageHandler simpleBroker) {
+                simpleBroker.setSubscriptionRegistry(subscriptionRegistry);
+            }
+        };
+    }
+
+    // @MessageMapping handlers block on JPA, so by default each one gets a virtual thread
+    @Bean
+    public TaskExecutor stompInboundExecutor() {
+        InstrumentedTaskDecorator metrics = new InstrumentedTaskDecorator("inbound", meterRegistry);
+        if (inboundVirtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stomp-inbound-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inboundMaxConcurrency);
+            executor.setTaskDecorator(metrics);
+            return executor;
+        }
+        // Platform pool, sized like Spring's default, for comparison and for environments without virtual threads
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stomp-inbound-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setTaskDecorator(metrics);
+        return executor;
+    }
+
+    // Outbound work is socket writes, not DB calls; a bounded platform pool keeps memory in check under slow clients
+    @Bean
+    public ThreadPoolTaskExecutor stompOutboundExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stomp-outbound-");
+        executor.setCorePoolSize(outboundPoolSize);
+        executor.setMaxPoolSize(outboundPoolSize);
+        executor.setQueueCapacity(outboundQueueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(new InstrumentedTaskDecorator("outbound", meterRegistry));
+        return executor;
     }
 
     // Custom handshake handler để lấy userId
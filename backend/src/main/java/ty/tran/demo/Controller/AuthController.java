@@ -61,6 +61,7 @@ public class AuthController {
 
     @PostMapping("/logout")
     public ResponseEntity<String> logout(@RequestHeader("Authorization") String token) {
+        authService.logout(token.startsWith("Bearer ") ? token.substring(7) : token);
         return ResponseEntity.ok("Logged out successfully");
     }
 }
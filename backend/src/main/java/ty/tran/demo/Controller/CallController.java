@@ -9,9 +9,9 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import ty.tran.demo.DTO.AuthenticatedUser;
 import ty.tran.demo.DTO.CallDTO;
 import ty.tran.demo.Entity.Call;
-import ty.tran.demo.Entity.User;
 import ty.tran.demo.Services.CallService;
 
 import java.util.HashMap;
@@ -194,7 +194,7 @@ public class CallController {
             @RequestParam String type) {
         try {
             System.out.println("=== CREATE CALL API DEBUG START ===");
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             System.out.println("User: " + user.getEmail() + " (ID: " + user.getId() + ")");
             System.out.println("Conversation ID: " + conversationId);
             System.out.println("Call type: " + type);
@@ -218,7 +218,7 @@ public class CallController {
             @PathVariable UUID callId,
             @RequestParam String status) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             Call.CallStatus callStatus = Call.CallStatus.valueOf(status.toLowerCase());
             CallDTO call = callService.updateCallStatus(callId, callStatus);
             return ResponseEntity.ok(call);
@@ -234,7 +234,7 @@ public class CallController {
             @PathVariable UUID callId) {
         try {
             System.out.println("=== END CALL API DEBUG START ===");
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             System.out.println("User: " + user.getEmail() + " (ID: " + user.getId() + ")");
             System.out.println("Call ID: " + callId);
             CallDTO call = callService.endCall(callId, user.getId());
@@ -255,7 +255,7 @@ public class CallController {
             Authentication authentication,
             @PathVariable UUID callId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             CallDTO call = callService.getCallById(callId, user.getId());
             return ResponseEntity.ok(call);
         } catch (Exception e) {
@@ -269,7 +269,7 @@ public class CallController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<CallDTO> calls = callService.getCallsByConversation(conversationId, user.getId());
             return ResponseEntity.ok(calls);
         } catch (Exception e) {
@@ -281,7 +281,7 @@ public class CallController {
     @GetMapping("/user")
     public ResponseEntity<List<CallDTO>> getCallsByUser(Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<CallDTO> calls = callService.getCallsByUser(user.getId());
             return ResponseEntity.ok(calls);
         } catch (Exception e) {
@@ -295,7 +295,7 @@ public class CallController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<CallDTO> calls = callService.getActiveCallsByConversation(conversationId, user.getId());
             return ResponseEntity.ok(calls);
         } catch (Exception e) {
@@ -307,7 +307,7 @@ public class CallController {
     @GetMapping("/active/user")
     public ResponseEntity<List<CallDTO>> getActiveCallsByUser(Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<CallDTO> calls = callService.getActiveCallsByUser(user.getId());
             return ResponseEntity.ok(calls);
         } catch (Exception e) {
@@ -322,7 +322,7 @@ public class CallController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<CallDTO> calls = callService.getCallHistory(user.getId(), page, size);
             return ResponseEntity.ok(calls);
         } catch (Exception e) {
@@ -334,7 +334,7 @@ public class CallController {
     @PostMapping("/cleanup")
     public ResponseEntity<String> cleanupExpiredCalls(Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             callService.cleanupExpiredCalls();
             return ResponseEntity.ok("Cleanup completed successfully");
         } catch (Exception e) {
@@ -5,9 +5,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import ty.tran.demo.DTO.AuthenticatedUser;
 import ty.tran.demo.DTO.ConversationDTO;
 import ty.tran.demo.DTO.CreateConversationRequest;
-import ty.tran.demo.Entity.User;
+import ty.tran.demo.DTO.InboxPageDTO;
 import ty.tran.demo.Services.ConversationService;
 import jakarta.validation.Valid;
 import java.util.List;
@@ -26,7 +27,7 @@ public class ConversationController {
             Authentication authentication,
             @Valid @RequestBody CreateConversationRequest request) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             ConversationDTO conversation = conversationService.createConversation(user.getId(), request);
             return ResponseEntity.ok(conversation);
         } catch (Exception e) {
@@ -39,7 +40,7 @@ public class ConversationController {
     public ResponseEntity<List<ConversationDTO>> getUserConversations(
             Authentication authentication) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<ConversationDTO> conversations = conversationService.getUserConversations(user.getId());
             return ResponseEntity.ok(conversations);
         } catch (Exception e) {
@@ -48,12 +49,27 @@ public class ConversationController {
         }
     }
 
+    @GetMapping("/inbox")
+    public ResponseEntity<InboxPageDTO> getInbox(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "30") int limit) {
+        try {
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            InboxPageDTO inbox = conversationService.getInbox(user.getId(), cursor, Math.max(1, Math.min(limit, 100)));
+            return ResponseEntity.ok(inbox);
+        } catch (Exception e) {
+            log.error("Error getting inbox: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{conversationId}")
     public ResponseEntity<ConversationDTO> getConversation(
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             ConversationDTO conversation = conversationService.getConversationById(conversationId, user.getId());
             return ResponseEntity.ok(conversation);
         } catch (Exception e) {
@@ -67,7 +83,7 @@ public class ConversationController {
             Authentication authentication,
             @RequestParam UUID user2Id) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             log.info("Creating direct conversation between user {} and user {}", user.getId(), user2Id);
             ConversationDTO conversation = conversationService.getOrCreateDirectConversation(user.getId(), user2Id);
             log.info("Successfully created/found conversation: {}", conversation.getId());
@@ -85,7 +101,7 @@ public class ConversationController {
             @RequestParam(required = false) String title,
             @RequestParam(required = false) String avatarUrl) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             ConversationDTO conversation = conversationService.updateConversation(conversationId, user.getId(), title, avatarUrl);
             return ResponseEntity.ok(conversation);
         } catch (Exception e) {
@@ -100,7 +116,7 @@ public class ConversationController {
             @PathVariable UUID conversationId,
             @RequestParam UUID newMemberId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             conversationService.addMember(conversationId, user.getId(), newMemberId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -115,7 +131,7 @@ public class ConversationController {
             @PathVariable UUID conversationId,
             @PathVariable UUID memberId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             conversationService.removeMember(conversationId, user.getId(), memberId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -131,7 +147,7 @@ public class ConversationController {
             @PathVariable UUID memberId,
             @RequestParam String role) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             conversationService.updateMemberRole(conversationId, user.getId(), memberId, role);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -145,7 +161,7 @@ public class ConversationController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             conversationService.leaveConversation(conversationId, user.getId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -159,7 +175,7 @@ public class ConversationController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             conversationService.deleteConversation(conversationId, user.getId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -173,7 +189,7 @@ public class ConversationController {
             Authentication authentication,
             @RequestParam String q) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             List<ConversationDTO> conversations = conversationService.searchConversations(user.getId(), q);
             return ResponseEntity.ok(conversations);
         } catch (Exception e) {
@@ -3,9 +3,9 @@ package ty.tran.demo.Controller;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import ty.tran.demo.DTO.AuthenticatedUser;
 import ty.tran.demo.DTO.SearchUserDTO;
 import ty.tran.demo.DTO.UserDTO;
-import ty.tran.demo.Entity.User;
 import ty.tran.demo.Services.FriendService;
 
 import java.util.List;
@@ -29,7 +29,7 @@ public class FriendController {
     // Lấy danh sách bạn bè
     @GetMapping
     public ResponseEntity<List<UserDTO>> getFriends(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         List<UserDTO> friends = friendService.getFriends(user.getId());
         return ResponseEntity.ok(friends);
     }
@@ -39,7 +39,7 @@ public class FriendController {
     public ResponseEntity<List<UserDTO>> searchFriends(
             Authentication authentication,
             @RequestParam String query) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         List<UserDTO> friends = friendService.searchFriends(user.getId(), query);
         return ResponseEntity.ok(friends);
     }
@@ -47,7 +47,7 @@ public class FriendController {
     // Đếm số bạn bè
     @GetMapping("/count")
     public ResponseEntity<Long> countFriends(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         long count = friendService.countFriends(user.getId());
         return ResponseEntity.ok(count);
     }
@@ -57,7 +57,7 @@ public class FriendController {
     public ResponseEntity<Boolean> areFriends(
             Authentication authentication,
             @PathVariable UUID friendId) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         boolean areFriends = friendService.areFriends(user.getId(), friendId);
         return ResponseEntity.ok(areFriends);
     }
@@ -67,7 +67,7 @@ public class FriendController {
     public ResponseEntity<Void> removeFriend(
             Authentication authentication,
             @PathVariable UUID friendId) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         friendService.removeFriend(user.getId(), friendId);
         return ResponseEntity.ok().build();
     }
@@ -78,7 +78,7 @@ public class FriendController {
         System.out.println("=== TEST ENDPOINT CALLED ===");
         System.out.println("DEBUG - Test endpoint called, authentication=" + authentication);
         if (authentication != null) {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             System.out.println("DEBUG - Test endpoint user=" + user.getEmail());
         }
         return ResponseEntity.ok("Test endpoint working");
@@ -99,7 +99,7 @@ public class FriendController {
                 return ResponseEntity.status(401).build();
             }
             
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             System.out.println("DEBUG - FriendController: User=" + user.getEmail() + ", ID=" + user.getId());
             
             List<SearchUserDTO> users;
@@ -4,10 +4,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import ty.tran.demo.DTO.AuthenticatedUser;
 import ty.tran.demo.DTO.FriendRequestDTO;
 import ty.tran.demo.DTO.RespondFriendRequestDTO;
 import ty.tran.demo.DTO.SendFriendRequestDTO;
-import ty.tran.demo.Entity.User;
 import ty.tran.demo.Services.FriendRequestService;
 
 import java.util.List;
@@ -25,7 +25,7 @@ public class FriendRequestController {
     public ResponseEntity<FriendRequestDTO> sendFriendRequest(
             Authentication authentication,
             @RequestBody SendFriendRequestDTO request) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         FriendRequestDTO friendRequest = friendRequestService.sendFriendRequest(user.getId(), request);
         return ResponseEntity.ok(friendRequest);
     }
@@ -33,7 +33,7 @@ public class FriendRequestController {
     // Lấy danh sách lời mời đã gửi
     @GetMapping("/sent")
     public ResponseEntity<List<FriendRequestDTO>> getSentRequests(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         List<FriendRequestDTO> requests = friendRequestService.getSentRequests(user.getId());
         return ResponseEntity.ok(requests);
     }
@@ -41,7 +41,7 @@ public class FriendRequestController {
     // Lấy danh sách lời mời đã nhận
     @GetMapping("/received")
     public ResponseEntity<List<FriendRequestDTO>> getReceivedRequests(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         List<FriendRequestDTO> requests = friendRequestService.getReceivedRequests(user.getId());
         return ResponseEntity.ok(requests);
     }
@@ -51,7 +51,7 @@ public class FriendRequestController {
     public ResponseEntity<FriendRequestDTO> respondToFriendRequest(
             Authentication authentication,
             @RequestBody RespondFriendRequestDTO response) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         FriendRequestDTO friendRequest = friendRequestService.respondToFriendRequest(user.getId(), response);
         return ResponseEntity.ok(friendRequest);
     }
@@ -61,7 +61,7 @@ public class FriendRequestController {
     public ResponseEntity<Void> cancelFriendRequest(
             Authentication authentication,
             @PathVariable UUID requestId) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         friendRequestService.cancelFriendRequest(user.getId(), requestId);
         return ResponseEntity.ok().build();
     }
@@ -69,7 +69,7 @@ public class FriendRequestController {
     // Đếm số lời mời chưa đọc
     @GetMapping("/count")
     public ResponseEntity<Long> countPendingRequests(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         long count = friendRequestService.countPendingRequests(user.getId());
         return ResponseEntity.ok(count);
     }
@@ -79,7 +79,7 @@ public class FriendRequestController {
     public ResponseEntity<Boolean> hasPendingRequest(
             Authentication authentication,
             @PathVariable UUID receiverId) {
-        User user = (User) authentication.getPrincipal();
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
         boolean hasRequest = friendRequestService.hasPendingRequest(user.getId(), receiverId);
         return ResponseEntity.ok(hasRequest);
     }
@@ -1,19 +1,29 @@
 package ty.tran.demo.Controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ty.tran.demo.DTO.AuthenticatedUser;
 import ty.tran.demo.DTO.MessageDTO;
+import ty.tran.demo.DTO.MessageSearchResultDTO;
+import ty.tran.demo.DTO.MessageSliceDTO;
+import ty.tran.demo.DTO.ReadStateDTO;
 import ty.tran.demo.DTO.SendMessageRequest;
-import ty.tran.demo.Entity.User;
+import ty.tran.demo.Services.ConversationAccessService;
 import ty.tran.demo.Services.MessageService;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
@@ -25,13 +35,15 @@ import java.util.UUID;
 public class MessageController {
 
     private final MessageService messageService;
+    private final ConversationAccessService conversationAccessService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<MessageDTO> sendMessage(
             Authentication authentication,
             @Valid @RequestBody SendMessageRequest request) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             MessageDTO message = messageService.sendMessage(user.getId(), request);
             return ResponseEntity.ok(message);
         } catch (Exception e) {
@@ -49,7 +61,7 @@ public class MessageController {
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
             Pageable pageable = PageRequest.of(page, size, sort);
@@ -71,7 +83,7 @@ public class MessageController {
             @PathVariable UUID conversationId,
             @RequestParam String after) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             Instant afterTime = Instant.parse(after);
             List<MessageDTO> messages = messageService.getMessagesAfter(conversationId, user.getId(), afterTime);
             return ResponseEntity.ok(messages);
@@ -81,12 +93,48 @@ public class MessageController {
         }
     }
 
+    @GetMapping("/conversation/{conversationId}/after-seq")
+    public ResponseEntity<List<MessageDTO>> getMessagesAfterSeq(
+            Authentication authentication,
+            @PathVariable UUID conversationId,
+            @RequestParam long seq,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            int clampedLimit = Math.max(1, Math.min(limit, 500));
+            List<MessageDTO> messages = messageService.getMessagesAfterSeq(conversationId, user.getId(), seq, clampedLimit);
+            return ResponseEntity.ok(messages);
+        } catch (Exception e) {
+            log.error("Error getting messages after seq: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/conversation/{conversationId}/history")
+    public ResponseEntity<MessageSliceDTO> getMessageHistory(
+            Authentication authentication,
+            @PathVariable UUID conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            int boundedLimit = Math.max(1, Math.min(limit, 100));
+            MessageSliceDTO history = messageService.getMessageHistory(
+                    conversationId, user.getId(), before, after, boundedLimit);
+            return ResponseEntity.ok(history);
+        } catch (Exception e) {
+            log.error("Error getting message history: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{messageId}")
     public ResponseEntity<MessageDTO> getMessage(
             Authentication authentication,
             @PathVariable UUID messageId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             MessageDTO message = messageService.getMessageById(messageId, user.getId());
             return ResponseEntity.ok(message);
         } catch (Exception e) {
@@ -101,7 +149,7 @@ public class MessageController {
             @PathVariable UUID messageId,
             @RequestBody String newContent) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             MessageDTO message = messageService.editMessage(messageId, user.getId(), newContent);
             return ResponseEntity.ok(message);
         } catch (Exception e) {
@@ -115,7 +163,7 @@ public class MessageController {
             Authentication authentication,
             @PathVariable UUID messageId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             messageService.deleteMessage(messageId, user.getId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -129,7 +177,7 @@ public class MessageController {
             Authentication authentication,
             @PathVariable UUID messageId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             messageService.markAsRead(messageId, user.getId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -143,7 +191,7 @@ public class MessageController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             messageService.markConversationAsRead(conversationId, user.getId());
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -157,7 +205,7 @@ public class MessageController {
             Authentication authentication,
             @PathVariable UUID conversationId) {
         try {
-            User user = (User) authentication.getPrincipal();
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
             long unreadCount = messageService.getUnreadCount(conversationId, user.getId());
             return ResponseEntity.ok(unreadCount);
         } catch (Exception e) {
@@ -166,18 +214,84 @@ public class MessageController {
         }
     }
 
+    @GetMapping("/conversation/{conversationId}/read-state")
+    public ResponseEntity<List<ReadStateDTO>> getReadState(
+            Authentication authentication,
+            @PathVariable UUID conversationId) {
+        try {
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            List<ReadStateDTO> readState = messageService.getReadState(conversationId, user.getId());
+            return ResponseEntity.ok(readState);
+        } catch (Exception e) {
+            log.error("Error getting read state: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{messageId}/seen-by")
+    public ResponseEntity<List<UUID>> getSeenBy(
+            Authentication authentication,
+            @PathVariable UUID messageId) {
+        try {
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            List<UUID> seenBy = messageService.getSeenBy(messageId, user.getId());
+            return ResponseEntity.ok(seenBy);
+        } catch (Exception e) {
+            log.error("Error getting seen by: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/conversation/{conversationId}/search")
-    public ResponseEntity<List<MessageDTO>> searchMessages(
+    public ResponseEntity<List<MessageSearchResultDTO>> searchMessages(
             Authentication authentication,
             @PathVariable UUID conversationId,
-            @RequestParam String q) {
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            User user = (User) authentication.getPrincipal();
-            List<MessageDTO> messages = messageService.searchMessages(conversationId, user.getId(), q);
-            return ResponseEntity.ok(messages);
+            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, 100)));
+            List<MessageSearchResultDTO> results = messageService.searchMessages(conversationId, user.getId(), q, pageable);
+            return ResponseEntity.ok(results);
         } catch (Exception e) {
             log.error("Error searching messages: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
+
+    // Newline-delimited JSON, one result per line, written as each page of matches is read
+    @GetMapping(value = "/conversation/{conversationId}/search/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamSearchMessages(
+            Authentication authentication,
+            @PathVariable UUID conversationId,
+            @RequestParam String q) {
+        AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+        // Checked before the body is committed; once streaming starts the status can no longer change
+        if (q == null || q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean allowed = conversationAccessService.getAccess(conversationId, user.getId())
+                .filter(ConversationAccessService.ConversationAccess::isAllowed)
+                .isPresent();
+        if (!allowed) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                messageService.streamSearchMessages(conversationId, user.getId(), q, result -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(result));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Error streaming message search: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package ty.tran.demo.Controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -11,11 +12,15 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
-import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import ty.tran.demo.DTO.PresenceUpdateDTO;
 import ty.tran.demo.DTO.SendMessageRequest;
 import ty.tran.demo.Services.ConversationService;
 import ty.tran.demo.Services.MessageService;
+import ty.tran.demo.Services.PresenceService;
+import ty.tran.demo.Services.TypingService;
 
+import java.util.Map;
 import java.util.UUID;
 
 @Controller
@@ -26,6 +31,8 @@ public class WebSocketController {
     private final MessageService messageService;
     private final ConversationService conversationService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceService presenceService;
+    private final TypingService typingService;
 
     @MessageMapping("/conversation/{conversationId}/send")
     public void sendMessage(
@@ -90,17 +97,9 @@ public class WebSocketController {
                 return;
             }
 
-            // Check if user is member of conversation
-            if (!conversationService.isUserMember(conversationId, userId)) {
-                return;
-            }
+            // In-memory only: membership, throttling and the broadcast are handled by the typing service
+            typingService.update(conversationId, userId, Boolean.parseBoolean(isTyping));
 
-            // Broadcast typing indicator to all conversation members except sender
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + conversationId + "/typing",
-                    new TypingIndicator(userId, Boolean.parseBoolean(isTyping))
-            );
-            
         } catch (Exception e) {
             log.error("Error handling typing indicator: {}", e.getMessage());
         }
@@ -127,13 +126,8 @@ public class WebSocketController {
             }
 
             UUID msgId = UUID.fromString(messageId);
+            // Receipts are broadcast in aggregated frames when read watermarks are flushed
             messageService.markAsRead(msgId, userId);
-
-            // Broadcast read receipt to conversation members
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + conversationId + "/read",
-                    new ReadReceipt(userId, msgId)
-            );
             
         } catch (Exception e) {
             log.error("Error marking message as read: {}", e.getMessage());
@@ -174,7 +168,7 @@ public class WebSocketController {
             // Notify other members (optional)
             messagingTemplate.convertAndSend(
                     "/topic/conversation/" + conversationId + "/presence",
-                    new PresenceUpdate(userId, "online")
+                    PresenceUpdateDTO.of(userId, "online")
             );
             
         } catch (Exception e) {
@@ -204,7 +198,7 @@ public class WebSocketController {
             // Notify other members
             messagingTemplate.convertAndSend(
                     "/topic/conversation/" + conversationId + "/presence",
-                    new PresenceUpdate(userId, "offline")
+                    PresenceUpdateDTO.of(userId, "offline")
             );
             
         } catch (Exception e) {
@@ -212,104 +206,43 @@ public class WebSocketController {
         }
     }
 
-    // Helper classes for WebSocket messages
-    public static class TypingIndicator {
-        public UUID userId;
-        public boolean isTyping;
-        public long timestamp;
-
-        public TypingIndicator() {}
-
-        public TypingIndicator(UUID userId, boolean isTyping) {
-            this.userId = userId;
-            this.isTyping = isTyping;
-            this.timestamp = System.currentTimeMillis();
-        }
-    }
-
-    public static class ReadReceipt {
-        public UUID userId;
-        public UUID messageId;
-        public long timestamp;
-
-        public ReadReceipt() {}
-
-        public ReadReceipt(UUID userId, UUID messageId) {
-            this.userId = userId;
-            this.messageId = messageId;
-            this.timestamp = System.currentTimeMillis();
-        }
-    }
-
-    public static class PresenceUpdate {
-        public UUID userId;
-        public String status;
-        public long timestamp;
-
-        public PresenceUpdate() {}
-
-        public PresenceUpdate(UUID userId, String status) {
-            this.userId = userId;
-            this.status = status;
-            this.timestamp = System.currentTimeMillis();
-        }
-    }
-
-    // Handle WebSocket disconnect events to send presence offline
+    // Presence follows the user's sessions; the service debounces the offline transition
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        var sessionAttributes = headerAccessor.getSessionAttributes();
-        if (sessionAttributes == null) return;
-        
-        Object userIdObj = sessionAttributes.get("userId");
-        if (userIdObj != null) {
-            UUID userId;
-            if (userIdObj instanceof UUID) {
-                userId = (UUID) userIdObj;
-            } else if (userIdObj instanceof String) {
-                userId = UUID.fromString((String) userIdObj);
-            } else {
-                return;
-            }
-            
-            log.info("User {} disconnected, sending presence offline to all conversations", userId);
-            
-            // Send presence offline to all conversations this user is a member of
-            try {
-                // Get all conversations for this user and send presence offline
-                conversationService.getUserConversations(userId).forEach(conversation -> {
-                    messagingTemplate.convertAndSend(
-                        "/topic/conversation/" + conversation.getId() + "/presence",
-                        new PresenceUpdate(userId, "offline")
-                    );
-                    log.info("Sent presence offline for user {} in conversation {}", userId, conversation.getId());
-                });
-            } catch (Exception e) {
-                log.error("Error sending presence offline for user {}: {}", userId, e.getMessage());
-            }
+        UUID userId = sessionUserId(headerAccessor.getSessionAttributes());
+        if (userId != null) {
+            log.debug("User {} disconnected session {}", userId, event.getSessionId());
+            presenceService.sessionDisconnected(userId, event.getSessionId());
+            typingService.clearUser(userId);
         }
     }
 
-    // Handle WebSocket connect events to send presence online
+    // CONNECTED is published after the auth interceptor has put the userId into the session
     @EventListener
-    public void handleWebSocketConnectListener(SessionConnectEvent event) {
+    public void handleWebSocketConnectedListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        var sessionAttributes = headerAccessor.getSessionAttributes();
-        if (sessionAttributes == null) return;
-        
-        Object userIdObj = sessionAttributes.get("userId");
-        if (userIdObj != null) {
-            UUID userId;
-            if (userIdObj instanceof UUID) {
-                userId = (UUID) userIdObj;
-            } else if (userIdObj instanceof String) {
-                userId = UUID.fromString((String) userIdObj);
-            } else {
-                return;
-            }
-            
+        Object connectMessage = headerAccessor.getHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        if (!(connectMessage instanceof Message<?> connect)) {
+            return;
+        }
+        UUID userId = sessionUserId(SimpMessageHeaderAccessor.getSessionAttributes(connect.getHeaders()));
+        if (userId != null) {
             log.info("User {} connected", userId);
+            presenceService.sessionConnected(userId, headerAccessor.getSessionId());
+        }
+    }
+
+    private static UUID sessionUserId(Map<String, Object> sessionAttributes) {
+        if (sessionAttributes == null) {
+            return null;
+        }
+        Object userIdObj = sessionAttributes.get("userId");
+        if (userIdObj instanceof UUID) {
+            return (UUID) userIdObj;
+        } else if (userIdObj instanceof String) {
+            return UUID.fromString((String) userIdObj);
         }
+        return null;
     }
 }
@@ -0,0 +1,169 @@
+package ty.tran.demo.DAO;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ty.tran.demo.DTO.ConversationDTO;
+import ty.tran.demo.DTO.ConversationMemberDTO;
+import ty.tran.demo.DTO.InboxCursor;
+import ty.tran.demo.DTO.MessageDTO;
+import ty.tran.demo.Entity.Conversation;
+import ty.tran.demo.Entity.ConversationMember;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read model for a user's conversation list. One statement returns, per conversation, the header,
+ * the caller's unread count, the last-message pointer with its sender and the member list (as JSON),
+ * so the inbox costs one round trip however many conversations the user has.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InboxDAO {
+
+    // Direct conversations are only listed while the two users are still friends (same rule as
+    // ConversationDAO.findByUserId). friendships stores each pair once with user1_id < user2_id.
+    private static final String INBOX_SQL = """
+            SELECT c.id, c.type, c.title, c.avatar_url, c.created_by, creator.username AS created_by_username,
+                   c.created_at, c.updated_at, me.unread_count,
+                   c.last_message_id, c.last_message_at, c.last_sender_id, c.last_message_preview,
+                   sender.username AS last_sender_username, sender.display_name AS last_sender_display_name,
+                   sender.avatar_url AS last_sender_avatar_url,
+                   members.members
+            FROM conversation_members me
+            JOIN conversations c ON c.id = me.conversation_id
+            LEFT JOIN users creator ON creator.id = c.created_by
+            LEFT JOIN users sender ON sender.id = c.last_sender_id
+            LEFT JOIN LATERAL (
+                SELECT json_agg(json_build_object(
+                           'userId', u.id, 'username', u.username, 'displayName', u.display_name,
+                           'avatarUrl', u.avatar_url, 'role', cm.role, 'joinedAt', cm.joined_at,
+                           'mutedUntil', cm.muted_until, 'lastReadMessageId', cm.last_read_message_id,
+                           'lastSeenAt', u.last_seen_at)
+                       ORDER BY cm.joined_at) AS members
+                FROM conversation_members cm
+                JOIN users u ON u.id = cm.user_id
+                WHERE cm.conversation_id = c.id
+            ) members ON true
+            WHERE me.user_id = :userId
+              AND (c.type <> 'direct' OR EXISTS (
+                  SELECT 1 FROM conversation_members peer
+                  JOIN friendships f ON f.user1_id = LEAST(me.user_id, peer.user_id)
+                                    AND f.user2_id = GREATEST(me.user_id, peer.user_id)
+                  WHERE peer.conversation_id = c.id AND peer.user_id <> me.user_id))
+              AND (CAST(:cursorAt AS timestamptz) IS NULL
+                   OR c.updated_at < :cursorAt
+                   OR (c.updated_at = :cursorAt AND c.id < :cursorId))
+            ORDER BY c.updated_at DESC, c.id DESC
+            LIMIT :limit
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Returns up to limit conversations older than the cursor (or the newest when cursor is null).
+     * updatedAt is the persisted value, which is what the cursor is built from.
+     */
+    public List<ConversationDTO> findInbox(UUID userId, InboxCursor cursor, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("cursorAt", cursor != null ? Timestamp.from(cursor.activityAt()) : null, Types.TIMESTAMP_WITH_TIMEZONE)
+                .addValue("cursorId", cursor != null ? cursor.conversationId() : null, Types.OTHER)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(INBOX_SQL, params, (rs, rowNum) -> mapRow(rs));
+    }
+
+    private ConversationDTO mapRow(ResultSet rs) throws SQLException {
+        UUID conversationId = rs.getObject("id", UUID.class);
+
+        MessageDTO lastMessage = null;
+        UUID lastMessageId = rs.getObject("last_message_id", UUID.class);
+        if (lastMessageId != null) {
+            lastMessage = MessageDTO.builder()
+                    .id(lastMessageId)
+                    .conversationId(conversationId)
+                    .senderId(rs.getObject("last_sender_id", UUID.class))
+                    .senderUsername(rs.getString("last_sender_username"))
+                    .senderDisplayName(rs.getString("last_sender_display_name"))
+                    .senderAvatarUrl(rs.getString("last_sender_avatar_url"))
+                    .content(rs.getString("last_message_preview"))
+                    .createdAt(toInstant(rs.getTimestamp("last_message_at")))
+                    .build();
+        }
+
+        return ConversationDTO.builder()
+                .id(conversationId)
+                .type(Conversation.ConversationType.valueOf(rs.getString("type")))
+                .title(rs.getString("title"))
+                .avatarUrl(rs.getString("avatar_url"))
+                .createdById(rs.getObject("created_by", UUID.class))
+                .createdByUsername(rs.getString("created_by_username"))
+                .createdAt(toInstant(rs.getTimestamp("created_at")))
+                .updatedAt(toInstant(rs.getTimestamp("updated_at")))
+                .members(readMembers(rs.getString("members")))
+                .lastMessage(lastMessage)
+                .unreadCount(rs.getInt("unread_count"))
+                .build();
+    }
+
+    private List<ConversationMemberDTO> readMembers(String json) {
+        List<ConversationMemberDTO> members = new ArrayList<>();
+        JsonNode array = readTree(json);
+        if (array == null) {
+            return members;
+        }
+        for (JsonNode node : array) {
+            members.add(ConversationMemberDTO.builder()
+                    .userId(UUID.fromString(node.get("userId").asText()))
+                    .username(text(node, "username"))
+                    .displayName(text(node, "displayName"))
+                    .avatarUrl(text(node, "avatarUrl"))
+                    .role(ConversationMember.MemberRole.valueOf(node.get("role").asText()))
+                    .joinedAt(instant(node, "joinedAt"))
+                    .mutedUntil(instant(node, "mutedUntil"))
+                    .lastReadMessageId(node.hasNonNull("lastReadMessageId")
+                            ? UUID.fromString(node.get("lastReadMessageId").asText()) : null)
+                    .lastSeenAt(instant(node, "lastSeenAt"))
+                    .build());
+        }
+        return members;
+    }
+
+    private JsonNode readTree(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    // json_build_object renders timestamptz as ISO-8601 with an offset
+    private static Instant instant(JsonNode node, String field) {
+        return node.hasNonNull(field) ? OffsetDateTime.parse(node.get(field).asText()).toInstant() : null;
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
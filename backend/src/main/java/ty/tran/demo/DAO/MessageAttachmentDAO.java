@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ty.tran.demo.Entity.MessageAttachment;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -12,5 +13,7 @@ public interface MessageAttachmentDAO extends JpaRepository<MessageAttachment, U
 
     List<MessageAttachment> findByMessageId(UUID messageId);
 
+    List<MessageAttachment> findByMessageIdIn(Collection<UUID> messageIds);
+
     void deleteByMessageId(UUID messageId);
 }
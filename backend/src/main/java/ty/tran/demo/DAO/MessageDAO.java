@@ -2,6 +2,7 @@ package ty.tran.demo.DAO;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -26,20 +27,62 @@ public interface MessageDAO extends JpaRepository<Message, UUID> {
     @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.createdAt > :after ORDER BY m.createdAt ASC")
     List<Message> findMessagesAfter(@Param("conversationId") UUID conversationId, @Param("after") Instant after);
 
+    // Gap fill over idx_msg_conv_seq
+    List<Message> findByConversationIdAndSeqGreaterThanOrderBySeqAsc(UUID conversationId, Long seq, Pageable pageable);
+
     @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.createdAt < :before ORDER BY m.createdAt DESC")
     Page<Message> findMessagesBefore(@Param("conversationId") UUID conversationId, @Param("before") Instant before,
             Pageable pageable);
 
+    // Keyset pages over idx_msg_conv_created. The createdAt bound is what the index range scan uses;
+    // the id comparison only breaks ties between messages with the same timestamp.
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deletedAt IS NULL " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    Slice<Message> findLatestSlice(@Param("conversationId") UUID conversationId, Pageable pageable);
+
+    // Newest messages including deleted ones, used to seed the in-memory tail
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt DESC, m.id DESC")
+    Slice<Message> findRecentSlice(@Param("conversationId") UUID conversationId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deletedAt IS NULL " +
+            "AND m.createdAt <= :createdAt AND (m.createdAt < :createdAt OR m.id < :id) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    Slice<Message> findSliceBefore(@Param("conversationId") UUID conversationId,
+            @Param("createdAt") Instant createdAt,
+            @Param("id") UUID id,
+            Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.deletedAt IS NULL " +
+            "AND m.createdAt >= :createdAt AND (m.createdAt > :createdAt OR m.id > :id) " +
+            "ORDER BY m.createdAt ASC, m.id ASC")
+    Slice<Message> findSliceAfter(@Param("conversationId") UUID conversationId,
+            @Param("createdAt") Instant createdAt,
+            @Param("id") UUID id,
+            Pageable pageable);
+
+    // Ranked full-text search over the generated content_tsv column (GIN index idx_msg_content_tsv).
+    // The content is HTML-escaped before ts_headline, so the only markup in a snippet is its own <mark> tags.
+    @Query(value = "SELECT m.id AS id, ts_rank(m.content_tsv, q) AS rank, " +
+            "ts_headline('simple', " +
+            "  replace(replace(replace(replace(replace(m.content, '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), '\"', '&quot;'), '''', '&#39;'), " +
+            "  q, 'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=20, MinWords=5') AS snippet " +
+            "FROM messages m, websearch_to_tsquery('simple', :query) q " +
+            "WHERE m.conversation_id = :conversationId AND m.deleted_at IS NULL AND m.content_tsv @@ q " +
+            "ORDER BY rank DESC, m.created_at DESC, m.id DESC",
+            nativeQuery = true)
+    List<MessageSearchHit> searchInConversation(@Param("conversationId") UUID conversationId,
+            @Param("query") String query,
+            Pageable pageable);
+
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId AND m.createdAt > :after AND m.deletedAt IS NULL")
     long countUnreadMessages(@Param("conversationId") UUID conversationId, @Param("after") Instant after);
 
+    // Messages a full page listing counts; no timestamp bound, so the planner need not range-scan created_at
+    long countByConversationIdAndDeletedAtIsNull(UUID conversationId);
+
     Optional<Message> findFirstByConversationIdOrderByCreatedAtDesc(UUID conversationId);
 
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId AND m.sender.id = :senderId AND m.content = :content AND m.createdAt >= :after ORDER BY m.createdAt DESC")
-    List<Message> findDuplicateMessages(@Param("conversationId") UUID conversationId,
-            @Param("senderId") UUID senderId,
-            @Param("content") String content,
-            @Param("after") Instant after);
+    Optional<Message> findBySenderIdAndClientMessageId(UUID senderId, String clientMessageId);
 
     @Modifying
     @Transactional
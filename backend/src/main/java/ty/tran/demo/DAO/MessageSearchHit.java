@@ -0,0 +1,13 @@
+package ty.tran.demo.DAO;
+
+import java.util.UUID;
+
+// Row projection for MessageDAO.searchInConversation
+public interface MessageSearchHit {
+
+    UUID getId();
+
+    Double getRank();
+
+    String getSnippet();
+}
@@ -0,0 +1,13 @@
+package ty.tran.demo.DTO;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+// Principal of an authenticated request; carries only what authorization needs, never the entity
+@Value
+public class AuthenticatedUser {
+    UUID id;
+    String email;
+    boolean active;
+}
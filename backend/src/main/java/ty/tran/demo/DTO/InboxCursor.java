@@ -0,0 +1,28 @@
+package ty.tran.demo.DTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a user's inbox, (activityAt, conversationId) in descending activity order.
+ * Sent to clients as an opaque URL-safe string.
+ */
+public record InboxCursor(Instant activityAt, UUID conversationId) {
+
+    public String encode() {
+        String raw = activityAt.toString() + "|" + conversationId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static InboxCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new InboxCursor(Instant.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid inbox cursor");
+        }
+    }
+}
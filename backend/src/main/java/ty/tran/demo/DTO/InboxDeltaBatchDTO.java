@@ -0,0 +1,34 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// One frame per user per flush, carrying every conversation of theirs that changed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboxDeltaBatchDTO {
+    private List<Delta> deltas;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Delta {
+        private UUID conversationId;
+        private Instant activityAt;
+        private UUID lastMessageId;
+        private UUID lastSenderId;
+        private String lastSenderDisplayName;
+        private String lastMessagePreview;
+        private Instant lastMessageAt;
+        private int unreadCount;
+    }
+}
@@ -0,0 +1,19 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboxPageDTO {
+    // Most recently active first
+    private List<ConversationDTO> conversations;
+    private String nextCursor;
+    private boolean hasMore;
+}
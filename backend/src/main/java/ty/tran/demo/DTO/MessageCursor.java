@@ -0,0 +1,28 @@
+package ty.tran.demo.DTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a conversation's history, (createdAt, id) so messages with the same timestamp
+ * still have a strict order. Sent to clients as an opaque URL-safe string.
+ */
+public record MessageCursor(Instant createdAt, UUID id) {
+
+    public String encode() {
+        String raw = createdAt.toString() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new MessageCursor(Instant.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid message cursor");
+        }
+    }
+}
@@ -13,10 +13,11 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class MessageDTO {
     private UUID id;
     private UUID conversationId;
+    private Long seq;
     private UUID senderId;
     private String senderUsername;
     private String senderDisplayName;
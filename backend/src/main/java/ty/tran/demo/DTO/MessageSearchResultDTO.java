@@ -0,0 +1,17 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageSearchResultDTO {
+    private MessageDTO message;
+    // Matching fragment(s) of the content with terms wrapped in <mark></mark>
+    private String snippet;
+    private double rank;
+}
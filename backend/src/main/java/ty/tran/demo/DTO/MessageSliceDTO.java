@@ -0,0 +1,20 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageSliceDTO {
+    // Always in chronological order, oldest first
+    private List<MessageDTO> messages;
+    // Pass back as "before" (older pages) or "after" (newer pages) to continue in the same direction
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,23 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// Sent on /topic/conversation/{id}/presence; status is "online" or "offline"
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceUpdateDTO {
+    private UUID userId;
+    private String status;
+    private long timestamp;
+
+    public static PresenceUpdateDTO of(UUID userId, String status) {
+        return new PresenceUpdateDTO(userId, status, System.currentTimeMillis());
+    }
+}
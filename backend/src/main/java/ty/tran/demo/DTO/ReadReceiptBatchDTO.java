@@ -0,0 +1,28 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+// One frame per conversation per flush, carrying every watermark that moved
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReadReceiptBatchDTO {
+    private UUID conversationId;
+    private List<Receipt> receipts;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Receipt {
+        private UUID userId;
+        private UUID messageId;
+        private long timestamp;
+    }
+}
@@ -0,0 +1,20 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A member's read watermark: everything up to lastReadMessageAt has been seen
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReadStateDTO {
+    private UUID userId;
+    private UUID lastReadMessageId;
+    private Instant lastReadMessageAt;
+}
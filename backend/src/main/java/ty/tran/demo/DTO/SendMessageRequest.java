@@ -8,6 +8,7 @@ import ty.tran.demo.Entity.Message;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import java.util.List;
 import java.util.UUID;
 
@@ -28,4 +29,8 @@ public class SendMessageRequest {
     private Object metadata;
     private UUID replyToId;
     private List<MessageAttachmentDTO> attachments;
+
+    // Generated by the client per logical send; retries reuse it so the server stores the message once
+    @Size(max = 64, message = "Client message ID must be at most 64 characters")
+    private String clientMessageId;
 }
@@ -0,0 +1,20 @@
+package ty.tran.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+// Everyone currently typing in a conversation, sent on /topic/conversation/{id}/typing when the set changes
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TypingStateDTO {
+    private UUID conversationId;
+    private List<UUID> userIds;
+    private long timestamp;
+}
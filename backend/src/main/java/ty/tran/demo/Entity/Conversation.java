@@ -48,6 +48,20 @@ public class Conversation {
     @Column(name = "updated_at", nullable = false, columnDefinition = "TIMESTAMPTZ DEFAULT now()")
     private Instant updatedAt;
 
+    // Maintained with SQL by LastMessageService, never written through the entity
+    @Column(name = "last_message_id", insertable = false, updatable = false)
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_at", insertable = false, updatable = false)
+    private Instant lastMessageAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "last_sender_id", insertable = false, updatable = false)
+    private User lastSender;
+
+    @Column(name = "last_message_preview", insertable = false, updatable = false)
+    private String lastMessagePreview;
+
     public enum ConversationType {
         direct, group
     }
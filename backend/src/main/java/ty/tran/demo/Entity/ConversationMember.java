@@ -43,9 +43,17 @@ public class ConversationMember {
     @Column(name = "muted_until")
     private Instant mutedUntil;
 
-    @Column(name = "last_read_message_id")
+    // Read state and unread_count are written only by batched SQL (ReadReceiptService, UnreadCounterService);
+    // read-only here so saving a member for a role change cannot overwrite them with stale values
+    @Column(name = "last_read_message_id", insertable = false, updatable = false)
     private UUID lastReadMessageId;
 
+    @Column(name = "last_read_message_at", insertable = false, updatable = false)
+    private Instant lastReadMessageAt;
+
+    @Column(name = "unread_count", insertable = false, updatable = false)
+    private Integer unreadCount;
+
     public enum MemberRole {
         owner, admin, member
     }
@@ -14,12 +14,16 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import lombok.*;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uq_msg_sender_client_id", columnNames = {"sender_id", "client_message_id"})
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -63,6 +67,13 @@ public class Message {
     @Column(name = "deleted_at")
     private Instant deletedAt;
 
+    @Column(name = "client_message_id", length = 64)
+    private String clientMessageId;
+
+    // Position within the conversation, from MessageSequenceService
+    @Column(name = "seq", updatable = false)
+    private Long seq;
+
     public enum MessageType {
         text, image, file, call, system
     }
@@ -49,7 +49,8 @@ public class User {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
-    @Column(name = "last_seen_at")
+    // Written behind by PresenceService, never through the entity
+    @Column(name = "last_seen_at", updatable = false)
     private Instant lastSeenAt;
 
     @Column(name = "created_at", nullable = false, updatable = false, columnDefinition = "TIMESTAMPTZ DEFAULT now()")
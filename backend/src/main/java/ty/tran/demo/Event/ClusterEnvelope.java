@@ -0,0 +1,24 @@
+package ty.tran.demo.Event;
+
+import java.util.UUID;
+
+/**
+ * A STOMP frame published on one node and replayed into the local broker of every other node.
+ * {@code payload} is the already serialized message body, {@code destination} either a
+ * {@code /topic/...} or a {@code /user/{id}/...} destination (resolved by each receiving node).
+ * Cache invalidations travel the same way under a {@code cache:{name}} destination and are never
+ * replayed into the broker.
+ */
+public record ClusterEnvelope(
+        UUID eventId,
+        String nodeId,
+        String destination,
+        String contentType,
+        byte[] payload) {
+
+    public static final String CACHE_DESTINATION_PREFIX = "cache:";
+
+    public boolean isCacheInvalidation() {
+        return destination != null && destination.startsWith(CACHE_DESTINATION_PREFIX);
+    }
+}
@@ -0,0 +1,46 @@
+package ty.tran.demo.Event;
+
+import ty.tran.demo.DTO.ConversationDTO;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published inside the service transaction; fanned out to STOMP subscribers only after commit.
+ * {@code conversation} goes to the {@code /queue/conversations} queue of each recipient,
+ * {@code notice} is the plain-text line shown on the conversation topic.
+ * For MEMBER_REMOVED, {@code recipientIds} holds the user who left.
+ */
+public record ConversationEvent(
+        Type type,
+        UUID conversationId,
+        ConversationDTO conversation,
+        List<UUID> recipientIds,
+        String notice,
+        Instant occurredAt) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, MEMBER_ADDED, MEMBER_REMOVED, MEMBER_ROLE_UPDATED
+    }
+
+    public static ConversationEvent created(ConversationDTO conversation, List<UUID> recipientIds) {
+        return new ConversationEvent(Type.CREATED, conversation.getId(), conversation, recipientIds, null, Instant.now());
+    }
+
+    public static ConversationEvent updated(ConversationDTO conversation) {
+        return new ConversationEvent(Type.UPDATED, conversation.getId(), conversation, List.of(), null, Instant.now());
+    }
+
+    public static ConversationEvent memberAdded(ConversationDTO conversation, UUID newMemberId, String notice) {
+        return new ConversationEvent(Type.MEMBER_ADDED, conversation.getId(), conversation, List.of(newMemberId), notice, Instant.now());
+    }
+
+    public static ConversationEvent memberRemoved(UUID conversationId, UUID removedUserId, String notice) {
+        return new ConversationEvent(Type.MEMBER_REMOVED, conversationId, null, List.of(removedUserId), notice, Instant.now());
+    }
+
+    public static ConversationEvent notice(Type type, UUID conversationId, String notice) {
+        return new ConversationEvent(type, conversationId, null, List.of(), notice, Instant.now());
+    }
+}
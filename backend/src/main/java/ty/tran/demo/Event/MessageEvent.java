@@ -0,0 +1,20 @@
+package ty.tran.demo.Event;
+
+import ty.tran.demo.DTO.MessageDTO;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Published inside the service transaction; fanned out to STOMP subscribers only after commit.
+ */
+public record MessageEvent(Type type, UUID conversationId, MessageDTO message, Instant occurredAt) {
+
+    public enum Type {
+        CREATED, EDITED, DELETED
+    }
+
+    public static MessageEvent of(Type type, MessageDTO message) {
+        return new MessageEvent(type, message.getConversationId(), message, Instant.now());
+    }
+}
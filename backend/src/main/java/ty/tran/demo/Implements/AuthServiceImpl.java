@@ -108,8 +108,6 @@ public class AuthServiceImpl implements AuthService {
     @Override
     public AuthResponse refreshToken(String refreshToken) {
         logger.info("Starting token refresh process");
-        
-        jwtService.debugToken(refreshToken);
 
         User user = null;
         try {
@@ -118,7 +116,7 @@ public class AuthServiceImpl implements AuthService {
         } catch (Exception e) {
             logger.warn("Failed to validate refresh token, trying alternative approach: {}", e.getMessage());
             
-            String username = jwtService.extractUsername(refreshToken);
+            String username = jwtService.extractRefreshUsername(refreshToken);
             if (username != null) {
                 user = userService.findByEmail(username);
                 if (user != null) {
@@ -147,6 +145,12 @@ public class AuthServiceImpl implements AuthService {
     public boolean checkEmailExists(String email) {
         return userService.existsByEmail(email);
     }
+
+    @Override
+    public void logout(String token) {
+        // Signed tokens cannot be recalled, so this one is refused by every node until it expires
+        jwtService.revoke(token);
+    }
     
     private void cleanupOldTokensAsync(String oldToken, String newToken, User user) {
         new Thread(() -> {
@@ -0,0 +1,97 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ty.tran.demo.DAO.UserDAO;
+import ty.tran.demo.DTO.AuthenticatedUser;
+import ty.tran.demo.Services.AuthenticatedUserService;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Principals are cached per node for a short TTL. Changes made through UserService evict the
+ * principal on this node; other nodes pick the change up when their entry expires.
+ */
+@Service
+public class AuthenticatedUserServiceImpl implements AuthenticatedUserService {
+
+    private final UserDAO userDAO;
+    private final Cache<String, AuthenticatedUser> principals;
+    // Bumped on every eviction so a load that raced a user update is not installed
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+
+    public AuthenticatedUserServiceImpl(
+            UserDAO userDAO,
+            MeterRegistry meterRegistry,
+            @Value("${chat.auth.principal-cache.max-size:100000}") long maxSize,
+            @Value("${chat.auth.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.userDAO = userDAO;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "authenticatedUsers");
+    }
+
+    @Override
+    public AuthenticatedUser findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        AuthenticatedUser cached = principals.getIfPresent(email);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Loaded outside the cache's lock so a slow query never blocks lookups of other emails
+        long version = versions.get(stripe(email));
+        AuthenticatedUser loaded = userDAO.findByEmail(email)
+                .map(user -> new AuthenticatedUser(user.getId(), user.getEmail(),
+                        !Boolean.FALSE.equals(user.getIsActive())))
+                .orElse(null);
+        if (loaded == null) {
+            return null;
+        }
+        principals.asMap().compute(email, (key, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return versions.get(stripe(key)) == version ? loaded : null;
+        });
+        return loaded;
+    }
+
+    @Override
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        invalidate(email);
+        // Again after commit, so a load that read the old row in between is dropped too
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(email);
+                }
+            });
+        }
+    }
+
+    private void invalidate(String email) {
+        versions.incrementAndGet(stripe(email));
+        principals.invalidate(email);
+    }
+
+    private int stripe(String email) {
+        return Math.floorMod(email.hashCode(), versions.length());
+    }
+}
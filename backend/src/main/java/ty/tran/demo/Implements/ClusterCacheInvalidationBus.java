@@ -0,0 +1,109 @@
+package ty.tran.demo.Implements;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ty.tran.demo.Event.ClusterEnvelope;
+import ty.tran.demo.Services.CacheInvalidationBus;
+import ty.tran.demo.Services.ClusterBus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * CacheInvalidationBus over the ClusterBus: one envelope per publish, with the keys as a JSON array
+ * under the {@code cache:{name}} destination. Handlers run on the bus's listener thread.
+ */
+@Service
+@Slf4j
+public class ClusterCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final TypeReference<List<UUID>> KEYS = new TypeReference<>() {
+    };
+
+    // Absent on a single node
+    private final ClusterBus clusterBus;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+    public ClusterCacheInvalidationBus(ObjectProvider<ClusterBus> clusterBus, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.clusterBus = clusterBus.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        if (this.clusterBus != null) {
+            this.clusterBus.subscribe(this::receive);
+            this.clusterBus.onReconnect(this::invalidateAll);
+        }
+    }
+
+    @Override
+    public void publish(String cache, List<UUID> keys) {
+        if (clusterBus == null || keys.isEmpty()) {
+            return;
+        }
+        List<UUID> copy = List.copyOf(keys);
+        // afterCompletion still runs for synchronizations registered from an afterCommit callback
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        send(cache, copy);
+                    }
+                }
+            });
+        } else {
+            send(cache, copy);
+        }
+    }
+
+    @Override
+    public void subscribe(String cache, Consumer<List<UUID>> invalidate, Runnable invalidateAll) {
+        handlers.put(cache, new Handler(invalidate, invalidateAll));
+    }
+
+    private void send(String cache, List<UUID> keys) {
+        try {
+            clusterBus.publish(new ClusterEnvelope(UUID.randomUUID(), clusterBus.nodeId(),
+                    ClusterEnvelope.CACHE_DESTINATION_PREFIX + cache, "application/json", objectMapper.writeValueAsBytes(keys)));
+            meterRegistry.counter("chat.cluster.invalidations.published", "cache", cache).increment();
+        } catch (Exception e) {
+            log.error("Error publishing {} invalidation of {} keys: {}", cache, keys.size(), e.getMessage());
+        }
+    }
+
+    private void receive(ClusterEnvelope envelope) {
+        if (!envelope.isCacheInvalidation()) {
+            return;
+        }
+        String cache = envelope.destination().substring(ClusterEnvelope.CACHE_DESTINATION_PREFIX.length());
+        Handler handler = handlers.get(cache);
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.invalidate().accept(objectMapper.readValue(envelope.payload(), KEYS));
+            meterRegistry.counter("chat.cluster.invalidations.received", "cache", cache).increment();
+        } catch (Exception e) {
+            log.error("Error applying {} invalidation, clearing the cache: {}", cache, e.getMessage());
+            handler.invalidateAll().run();
+        }
+    }
+
+    private void invalidateAll() {
+        log.info("Cluster bus reconnected, clearing {} node-local caches", handlers.size());
+        handlers.values().forEach(handler -> handler.invalidateAll().run());
+    }
+
+    private record Handler(Consumer<List<UUID>> invalidate, Runnable invalidateAll) {
+    }
+}
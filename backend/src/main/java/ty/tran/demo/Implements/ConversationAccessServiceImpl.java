@@ -0,0 +1,258 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ty.tran.demo.DAO.ConversationDAO;
+import ty.tran.demo.DAO.ConversationMemberDAO;
+import ty.tran.demo.DAO.FriendshipDAO;
+import ty.tran.demo.Entity.Conversation;
+import ty.tran.demo.Entity.ConversationMember;
+import ty.tran.demo.Services.CacheInvalidationBus;
+import ty.tran.demo.Services.ConversationAccessService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+@Service
+public class ConversationAccessServiceImpl implements ConversationAccessService {
+
+    // Invalidations other nodes apply to their copy of this cache
+    private static final String MEMBER_INVALIDATION = "access-member";
+    private static final String CONVERSATION_INVALIDATION = "access-conversation";
+    private static final String FRIENDSHIP_INVALIDATION = "access-friendship";
+
+    private final ConversationDAO conversationDAO;
+    private final ConversationMemberDAO conversationMemberDAO;
+    private final FriendshipDAO friendshipDAO;
+    private final CacheInvalidationBus invalidationBus;
+    private final Cache<AccessKey, Optional<ConversationAccess>> cache;
+    // Striped by conversation id and bumped on every eviction, so a load that raced a change is not installed
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+    // Friendship changes can affect any direct conversation, so they bump one shared version
+    private final AtomicLong friendshipVersion = new AtomicLong();
+    // Cached users per conversation and cached direct entries per user pair, so an eviction
+    // touches only its own entries instead of scanning the whole cache
+    private final ConcurrentMap<UUID, Set<UUID>> usersByConversation = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UserPair, Set<AccessKey>> directByUserPair = new ConcurrentHashMap<>();
+
+    public ConversationAccessServiceImpl(
+            ConversationDAO conversationDAO,
+            ConversationMemberDAO conversationMemberDAO,
+            FriendshipDAO friendshipDAO,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${chat.access-cache.max-size:100000}") long maxSize,
+            @Value("${chat.access-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.conversationDAO = conversationDAO;
+        this.conversationMemberDAO = conversationMemberDAO;
+        this.friendshipDAO = friendshipDAO;
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .evictionListener((AccessKey key, Optional<ConversationAccess> access, RemovalCause cause) ->
+                        unindex(key, access))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "conversationAccess");
+        invalidationBus.subscribe(MEMBER_INVALIDATION, keys -> removeMember(keys.get(0), keys.get(1)), this::removeAll);
+        invalidationBus.subscribe(CONVERSATION_INVALIDATION, keys -> keys.forEach(this::removeConversation), this::removeAll);
+        invalidationBus.subscribe(FRIENDSHIP_INVALIDATION, keys -> removeFriendship(keys.get(0), keys.get(1)), this::removeAll);
+    }
+
+    @Override
+    public Optional<ConversationAccess> getAccess(UUID conversationId, UUID userId) {
+        AccessKey key = new AccessKey(conversationId, userId);
+        Optional<ConversationAccess> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Loaded outside the cache's lock so the queries never block lookups that hash nearby
+        long version = versions.get(stripe(conversationId));
+        long friendships = friendshipVersion.get();
+        Optional<ConversationAccess> loaded = load(key);
+        cache.asMap().compute(key, (k, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            boolean current = versions.get(stripe(k.conversationId())) == version
+                    && friendshipVersion.get() == friendships;
+            if (!current) {
+                return null;
+            }
+            index(k, loaded);
+            return loaded;
+        });
+        return loaded;
+    }
+
+    @Override
+    public void evictMember(UUID conversationId, UUID userId) {
+        evictNowAndAfterCompletion(() -> removeMember(conversationId, userId));
+        invalidationBus.publish(MEMBER_INVALIDATION, List.of(conversationId, userId));
+    }
+
+    @Override
+    public void evictConversation(UUID conversationId) {
+        evictNowAndAfterCompletion(() -> removeConversation(conversationId));
+        invalidationBus.publish(CONVERSATION_INVALIDATION, List.of(conversationId));
+    }
+
+    @Override
+    public void evictFriendship(UUID user1Id, UUID user2Id) {
+        evictNowAndAfterCompletion(() -> removeFriendship(user1Id, user2Id));
+        invalidationBus.publish(FRIENDSHIP_INVALIDATION, List.of(user1Id, user2Id));
+    }
+
+    private void removeMember(UUID conversationId, UUID userId) {
+        versions.incrementAndGet(stripe(conversationId));
+        remove(new AccessKey(conversationId, userId));
+    }
+
+    private void removeConversation(UUID conversationId) {
+        versions.incrementAndGet(stripe(conversationId));
+        Set<UUID> userIds = usersByConversation.get(conversationId);
+        if (userIds != null) {
+            for (UUID userId : List.copyOf(userIds)) {
+                remove(new AccessKey(conversationId, userId));
+            }
+        }
+    }
+
+    private void removeFriendship(UUID user1Id, UUID user2Id) {
+        friendshipVersion.incrementAndGet();
+        Set<AccessKey> keys = directByUserPair.get(UserPair.of(user1Id, user2Id));
+        if (keys != null) {
+            for (AccessKey key : List.copyOf(keys)) {
+                remove(key);
+            }
+        }
+    }
+
+    // Loads already in flight must not install what they read, so every version moves first
+    private void removeAll() {
+        friendshipVersion.incrementAndGet();
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+        for (AccessKey key : List.copyOf(cache.asMap().keySet())) {
+            remove(key);
+        }
+    }
+
+    private Optional<ConversationAccess> load(AccessKey key) {
+        Optional<ConversationMember> member = conversationMemberDAO.findByConversationIdAndUserId(
+                key.conversationId(), key.userId());
+        if (member.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Conversation conversation = conversationDAO.findById(key.conversationId()).orElse(null);
+        if (conversation == null) {
+            return Optional.empty();
+        }
+
+        UUID peerUserId = null;
+        boolean peerIsFriend = false;
+        if (conversation.getType() == Conversation.ConversationType.direct) {
+            // Get the other user in the direct conversation
+            peerUserId = conversationMemberDAO.findByConversationId(key.conversationId()).stream()
+                    .map(m -> m.getId().getUserId())
+                    .filter(id -> !id.equals(key.userId()))
+                    .findFirst()
+                    .orElse(null);
+            peerIsFriend = peerUserId != null && friendshipDAO.areFriends(key.userId(), peerUserId);
+        }
+
+        return Optional.of(new ConversationAccess(
+                conversation.getType(), member.get().getRole(), peerUserId, peerIsFriend));
+    }
+
+    private void remove(AccessKey key) {
+        Optional<ConversationAccess> removed = cache.asMap().remove(key);
+        if (removed != null) {
+            unindex(key, removed);
+        }
+    }
+
+    private void index(AccessKey key, Optional<ConversationAccess> access) {
+        usersByConversation.compute(key.conversationId(), (id, userIds) -> {
+            Set<UUID> indexed = userIds != null ? userIds : ConcurrentHashMap.newKeySet();
+            indexed.add(key.userId());
+            return indexed;
+        });
+        UserPair pair = directPair(key, access);
+        if (pair != null) {
+            directByUserPair.compute(pair, (p, keys) -> {
+                Set<AccessKey> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                indexed.add(key);
+                return indexed;
+            });
+        }
+    }
+
+    private void unindex(AccessKey key, Optional<ConversationAccess> access) {
+        usersByConversation.computeIfPresent(key.conversationId(), (id, userIds) -> {
+            userIds.remove(key.userId());
+            return userIds.isEmpty() ? null : userIds;
+        });
+        UserPair pair = directPair(key, access);
+        if (pair != null) {
+            directByUserPair.computeIfPresent(pair, (p, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static UserPair directPair(AccessKey key, Optional<ConversationAccess> access) {
+        if (access == null || access.isEmpty() || !access.get().isDirect() || access.get().peerUserId() == null) {
+            return null;
+        }
+        return UserPair.of(key.userId(), access.get().peerUserId());
+    }
+
+    private int stripe(UUID conversationId) {
+        return Math.floorMod(conversationId.hashCode(), versions.length());
+    }
+
+    /**
+     * Evicts immediately and once more when the surrounding transaction completes,
+     * so a concurrent reader cannot re-cache the state that is being replaced.
+     */
+    private void evictNowAndAfterCompletion(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private record AccessKey(UUID conversationId, UUID userId) {
+    }
+
+    private record UserPair(UUID low, UUID high) {
+        static UserPair of(UUID a, UUID b) {
+            return a.compareTo(b) <= 0 ? new UserPair(a, b) : new UserPair(b, a);
+        }
+    }
+}
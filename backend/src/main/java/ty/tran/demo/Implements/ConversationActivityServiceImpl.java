@@ -0,0 +1,166 @@
+package ty.tran.demo.Implements;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ty.tran.demo.Services.ConversationActivityService;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class ConversationActivityServiceImpl implements ConversationActivityService {
+
+    // Rows are locked in id order before they are written, so the UPDATE that follows sees every
+    // message committed ahead of it, and flushes from other servers neither deadlock nor overwrite
+    // a newer pointer with one computed from an older snapshot
+    private static final String LOCK_SQL =
+            "SELECT 1 FROM conversations WHERE id IN (:conversationIds) ORDER BY id FOR NO KEY UPDATE";
+
+    // Never moves updated_at backwards. The pointer is recomputed from the messages themselves, so an
+    // edit or delete that committed before the flush is reflected in it
+    private static final String UPDATE_SQL =
+            "UPDATE conversations c SET updated_at = greatest(c.updated_at, ?), " +
+            "(last_message_id, last_message_at, last_sender_id, last_message_preview) = (" +
+            "  SELECT m.id, m.created_at, m.sender_id, left(m.content, " + LastMessageServiceImpl.PREVIEW_LENGTH + ") " +
+            "  FROM messages m WHERE m.conversation_id = c.id AND m.deleted_at IS NULL " +
+            "  ORDER BY m.created_at DESC, m.id DESC LIMIT 1) " +
+            "WHERE c.id = ?";
+
+    // Pending value of a conversation whose pointer changed without new activity
+    private static final Instant NO_ACTIVITY = Instant.EPOCH;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<UUID, Instant> pending = new ConcurrentHashMap<>();
+    // Drained from pending but not yet committed, still visible to readers
+    private final ConcurrentHashMap<UUID, Instant> flushing = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public ConversationActivityServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("chat.activity.pending", pending, Map::size)
+                .description("Conversations with activity or a last-message change waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordMessageSent(UUID conversationId, Instant at) {
+        record(conversationId, at);
+    }
+
+    @Override
+    public void recordMessageChanged(UUID conversationId) {
+        record(conversationId, NO_ACTIVITY);
+    }
+
+    private void record(UUID conversationId, Instant at) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.merge(conversationId, at, ConversationActivityServiceImpl::latest);
+                }
+            });
+        } else {
+            pending.merge(conversationId, at, ConversationActivityServiceImpl::latest);
+        }
+    }
+
+    @Override
+    public Instant getLastActivity(UUID conversationId, Instant persistedUpdatedAt) {
+        Instant result = persistedUpdatedAt;
+        result = latest(result, flushing.get(conversationId));
+        result = latest(result, pending.get(conversationId));
+        return result;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.activity.flush-interval-ms:250}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UUID> conversationIds = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (UUID conversationId : pending.keySet()) {
+            Instant at = pending.get(conversationId);
+            if (at == null) {
+                continue;
+            }
+            // Published to flushing before leaving pending so readers never see a gap;
+            // a newer value recorded in between stays pending for the next flush
+            flushing.put(conversationId, at);
+            pending.remove(conversationId, at);
+            conversationIds.add(conversationId);
+            batch.add(new Object[] { Timestamp.from(at), conversationId });
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                namedJdbcTemplate.query(LOCK_SQL, new MapSqlParameterSource("conversationIds", conversationIds), rs -> {
+                });
+                jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            });
+        } catch (Exception e) {
+            log.error("Error flushing activity for {} conversations, will retry: {}", batch.size(), e.getMessage());
+            // Put the drained values back; anything recorded meanwhile is newer or merges to the latest
+            flushing.forEach((conversationId, at) -> pending.merge(conversationId, at, ConversationActivityServiceImpl::latest));
+        } finally {
+            flushing.clear();
+            meterRegistry.timer("chat.activity.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+}
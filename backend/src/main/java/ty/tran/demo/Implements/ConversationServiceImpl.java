@@ -2,15 +2,23 @@ package ty.tran.demo.Implements;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ty.tran.demo.DAO.*;
 import ty.tran.demo.DTO.*;
 import ty.tran.demo.Entity.*;
+import ty.tran.demo.Event.ConversationEvent;
+import ty.tran.demo.Services.ConversationAccessService;
+import ty.tran.demo.Services.ConversationAccessService.ConversationAccess;
+import ty.tran.demo.Services.ConversationActivityService;
 import ty.tran.demo.Services.ConversationService;
+import ty.tran.demo.Services.PresenceService;
+import ty.tran.demo.Services.UnreadCounterService;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,12 +31,16 @@ import java.util.stream.Collectors;
 public class ConversationServiceImpl implements ConversationService {
 
     private final ConversationDAO conversationDAO;
+    private final InboxDAO inboxDAO;
     private final ConversationMemberDAO conversationMemberDAO;
     private final DirectConversationDAO directConversationDAO;
     private final UserDAO userDAO;
-    private final MessageDAO messageDAO;
     private final FriendshipDAO friendshipDAO;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationAccessService conversationAccessService;
+    private final ConversationActivityService conversationActivityService;
+    private final UnreadCounterService unreadCounterService;
+    private final PresenceService presenceService;
+    private final ApplicationEventPublisher eventPublisher;
     // Removed circular dependency - will use direct DAO access
 
     @Override
@@ -113,6 +125,7 @@ public class ConversationServiceImpl implements ConversationService {
 
         // Flush to ensure conversation is persisted before creating DirectConversation
         conversationDAO.flush();
+        conversationAccessService.evictConversation(conversation.getId());
 
         // Create direct conversation record if needed
         if (request.getType() == Conversation.ConversationType.direct) {
@@ -194,15 +207,11 @@ public class ConversationServiceImpl implements ConversationService {
 
         ConversationDTO conversationDTO = convertToDTO(conversation, creatorId);
 
-        // Send real-time notification to all members
-        List<ConversationMember> allMembers = conversationMemberDAO.findByConversationId(conversation.getId());
-        for (ConversationMember member : allMembers) {
-            messagingTemplate.convertAndSendToUser(
-                    member.getUser().getId().toString(),
-                    "/queue/conversations",
-                    conversationDTO
-            );
-        }
+        // Send real-time notification to all members after commit
+        List<UUID> memberIds = conversationDTO.getMembers().stream()
+                .map(ConversationMemberDTO::getUserId)
+                .collect(Collectors.toList());
+        eventPublisher.publishEvent(ConversationEvent.created(conversationDTO, memberIds));
 
         log.info("Conversation created: {} by user {}", conversation.getId(), creatorId);
         return conversationDTO;
@@ -211,24 +220,45 @@ public class ConversationServiceImpl implements ConversationService {
     @Override
     @Transactional(readOnly = true)
     public List<ConversationDTO> getUserConversations(UUID userId) {
-        System.out.println("=== GET USER CONVERSATIONS DEBUG START ===");
-        System.out.println("DEBUG - getUserConversations: userId=" + userId);
-        
-        List<Conversation> conversations = conversationDAO.findByUserId(userId);
-        System.out.println("DEBUG - Found " + conversations.size() + " conversations");
-        
-        List<ConversationDTO> result = conversations.stream()
-                .map(conv -> {
-                    System.out.println("DEBUG - Conversation: " + conv.getId() + " (" + conv.getType() + ")");
-                    return convertToDTO(conv, userId);
-                })
-                .collect(Collectors.toList());
-        
-        System.out.println("DEBUG - Returning " + result.size() + " conversation DTOs");
-        System.out.println("=== GET USER CONVERSATIONS DEBUG END ===");
+        // Whole inbox in one query
+        List<ConversationDTO> result = overlayLiveState(inboxDAO.findInbox(userId, null, Integer.MAX_VALUE), userId);
+        log.debug("Found {} conversations for user {}", result.size(), userId);
         return result;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public InboxPageDTO getInbox(UUID userId, String cursor, int limit) {
+        // One extra row tells whether another page exists
+        List<ConversationDTO> rows = inboxDAO.findInbox(userId, cursor != null ? InboxCursor.decode(cursor) : null, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<ConversationDTO> page = hasMore ? rows.subList(0, limit) : rows;
+
+        // The cursor follows persisted activity times, before any pending bump is overlaid
+        String nextCursor = null;
+        if (!page.isEmpty()) {
+            ConversationDTO last = page.get(page.size() - 1);
+            nextCursor = new InboxCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+
+        return InboxPageDTO.builder()
+                .conversations(overlayLiveState(new ArrayList<>(page), userId))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Applies activity not yet flushed to updated_at and in-memory presence, then re-sorts on activity
+    private List<ConversationDTO> overlayLiveState(List<ConversationDTO> conversations, UUID currentUserId) {
+        conversations.forEach(c -> {
+            c.setUpdatedAt(conversationActivityService.getLastActivity(c.getId(), c.getUpdatedAt()));
+            c.getMembers().forEach(m -> m.setOnline(presenceService.isOnline(m.getUserId())));
+            c.setOnline(isAnyoneElseOnline(c.getMembers(), currentUserId));
+        });
+        conversations.sort(Comparator.comparing(ConversationDTO::getUpdatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return conversations;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public ConversationDTO getConversationById(UUID conversationId, UUID userId) {
@@ -300,8 +330,8 @@ public class ConversationServiceImpl implements ConversationService {
         conversation = conversationDAO.save(conversation);
         ConversationDTO conversationDTO = convertToDTO(conversation, userId);
 
-        // Send real-time update
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, conversationDTO);
+        // Send real-time update after commit
+        eventPublisher.publishEvent(ConversationEvent.updated(conversationDTO));
 
         return conversationDTO;
     }
@@ -349,18 +379,13 @@ public class ConversationServiceImpl implements ConversationService {
                 .build();
 
         conversationMemberDAO.save(member);
+        conversationAccessService.evictMember(conversationId, newMemberId);
+        unreadCounterService.evictConversation(conversationId);
 
-        // Send real-time notification
+        // Send real-time notification to the new member and the other members after commit
         ConversationDTO conversationDTO = convertToDTO(conversation, newMemberId);
-        messagingTemplate.convertAndSendToUser(
-                newMemberId.toString(),
-                "/queue/conversations",
-                conversationDTO
-        );
-
-        // Notify other members
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, 
-                "User " + newMember.getUsername() + " joined the conversation");
+        eventPublisher.publishEvent(ConversationEvent.memberAdded(conversationDTO, newMemberId,
+                "User " + newMember.getUsername() + " joined the conversation"));
     }
 
     @Override
@@ -379,10 +404,12 @@ public class ConversationServiceImpl implements ConversationService {
         }
 
         conversationMemberDAO.delete(member);
+        conversationAccessService.evictMember(conversationId, memberId);
+        unreadCounterService.evictConversation(conversationId);
 
-        // Send real-time notification
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, 
-                "User " + member.getUser().getUsername() + " left the conversation");
+        // Send real-time notification after commit
+        eventPublisher.publishEvent(ConversationEvent.memberRemoved(conversationId, member.getId().getUserId(),
+                "User " + member.getUser().getUsername() + " left the conversation"));
     }
 
     @Override
@@ -399,10 +426,11 @@ public class ConversationServiceImpl implements ConversationService {
             ConversationMember.MemberRole newRole = ConversationMember.MemberRole.valueOf(role);
             member.setRole(newRole);
             conversationMemberDAO.save(member);
+            conversationAccessService.evictMember(conversationId, memberId);
 
-            // Send real-time notification
-            messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, 
-                    "User " + member.getUser().getUsername() + " role updated to " + role);
+            // Send real-time notification after commit
+            eventPublisher.publishEvent(ConversationEvent.notice(ConversationEvent.Type.MEMBER_ROLE_UPDATED, conversationId,
+                    "User " + member.getUser().getUsername() + " role updated to " + role));
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Invalid role: " + role);
         }
@@ -436,10 +464,13 @@ public class ConversationServiceImpl implements ConversationService {
         }
 
         conversationMemberDAO.delete(member);
+        // Ownership may have moved to another member, so drop every entry of this conversation
+        conversationAccessService.evictConversation(conversationId);
+        unreadCounterService.evictConversation(conversationId);
 
-        // Send real-time notification
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, 
-                "User " + member.getUser().getUsername() + " left the conversation");
+        // Send real-time notification after commit
+        eventPublisher.publishEvent(ConversationEvent.memberRemoved(conversationId, member.getId().getUserId(),
+                "User " + member.getUser().getUsername() + " left the conversation"));
     }
 
     @Override
@@ -465,9 +496,11 @@ public class ConversationServiceImpl implements ConversationService {
 
         // Delete conversation
         conversationDAO.delete(conversation);
+        conversationAccessService.evictConversation(conversationId);
 
-        // Send real-time notification
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversationId, "Conversation deleted");
+        // Send real-time notification after commit
+        eventPublisher.publishEvent(ConversationEvent.notice(ConversationEvent.Type.DELETED, conversationId,
+                "Conversation deleted"));
     }
 
     @Override
@@ -483,39 +516,18 @@ public class ConversationServiceImpl implements ConversationService {
     @Override
     @Transactional(readOnly = true)
     public boolean isUserMember(UUID conversationId, UUID userId) {
-        boolean isMember = conversationMemberDAO.existsByConversationIdAndUserId(conversationId, userId);
-        
-        if (!isMember) {
-            return false;
-        }
-
-        // For direct conversations, also check if users are friends
-        Conversation conversation = conversationDAO.findById(conversationId).orElse(null);
-        if (conversation != null && conversation.getType() == Conversation.ConversationType.direct) {
-            // Get the other user in the direct conversation
-            List<ConversationMember> members = conversationMemberDAO.findByConversationId(conversationId);
-            UUID otherUserId = members.stream()
-                    .map(member -> member.getUser().getId())
-                    .filter(id -> !id.equals(userId))
-                    .findFirst()
-                    .orElse(null);
-
-            if (otherUserId != null) {
-                // Check if users are friends
-                return friendshipDAO.areFriends(userId, otherUserId);
-            }
-        }
-
-        return isMember;
+        // For direct conversations, membership also requires the users to still be friends
+        return conversationAccessService.getAccess(conversationId, userId)
+                .map(ConversationAccess::isAllowed)
+                .orElse(false);
     }
 
     @Override
     @Transactional(readOnly = true)
     public boolean isUserAdmin(UUID conversationId, UUID userId) {
-        Optional<ConversationMember> member = conversationMemberDAO.findByConversationIdAndUserId(conversationId, userId);
-        return member.isPresent() && 
-               (member.get().getRole() == ConversationMember.MemberRole.owner || 
-                member.get().getRole() == ConversationMember.MemberRole.admin);
+        return conversationAccessService.getAccess(conversationId, userId)
+                .map(ConversationAccess::isAdmin)
+                .orElse(false);
     }
 
     private ConversationDTO convertToDTO(Conversation conversation, UUID currentUserId) {
@@ -524,15 +536,14 @@ public class ConversationServiceImpl implements ConversationService {
                 .map(this::convertMemberToDTO)
                 .collect(Collectors.toList());
 
-        // Get last message
+        // Last message from the pointer kept on the conversation; the sender is usually one of the members loaded above
         MessageDTO lastMessage = null;
-        Optional<Message> lastMsg = messageDAO.findFirstByConversationIdOrderByCreatedAtDesc(conversation.getId());
-        if (lastMsg.isPresent()) {
-            lastMessage = convertMessageToDTO(lastMsg.get());
+        if (conversation.getLastMessageId() != null) {
+            lastMessage = convertLastMessageToDTO(conversation);
         }
 
-        // Get unread count - simplified for now
-        long unreadCount = 0; // TODO: Implement unread count calculation
+        // Maintained per member, served from the counter cache
+        long unreadCount = unreadCounterService.getUnreadCount(conversation.getId(), currentUserId);
 
         return ConversationDTO.builder()
                 .id(conversation.getId())
@@ -542,13 +553,18 @@ public class ConversationServiceImpl implements ConversationService {
                 .createdById(conversation.getCreatedBy().getId())
                 .createdByUsername(conversation.getCreatedBy().getUsername())
                 .createdAt(conversation.getCreatedAt())
-                .updatedAt(conversation.getUpdatedAt())
+                .updatedAt(conversationActivityService.getLastActivity(conversation.getId(), conversation.getUpdatedAt()))
                 .members(memberDTOs)
                 .lastMessage(lastMessage)
                 .unreadCount((int) unreadCount)
+                .isOnline(isAnyoneElseOnline(memberDTOs, currentUserId))
                 .build();
     }
 
+    private static boolean isAnyoneElseOnline(List<ConversationMemberDTO> members, UUID currentUserId) {
+        return members.stream().anyMatch(m -> m.isOnline() && !m.getUserId().equals(currentUserId));
+    }
+
     private ConversationMemberDTO convertMemberToDTO(ConversationMember member) {
         return ConversationMemberDTO.builder()
                 .userId(member.getUser().getId())
@@ -560,23 +576,21 @@ public class ConversationServiceImpl implements ConversationService {
                 .mutedUntil(member.getMutedUntil())
                 .lastReadMessageId(member.getLastReadMessageId())
                 .lastSeenAt(member.getUser().getLastSeenAt())
+                .isOnline(presenceService.isOnline(member.getUser().getId()))
                 .build();
     }
 
-    private MessageDTO convertMessageToDTO(Message message) {
+    private MessageDTO convertLastMessageToDTO(Conversation conversation) {
+        User sender = conversation.getLastSender();
         return MessageDTO.builder()
-                .id(message.getId())
-                .conversationId(message.getConversation().getId())
-                .senderId(message.getSender().getId())
-                .senderUsername(message.getSender().getUsername())
-                .senderDisplayName(message.getSender().getDisplayName())
-                .senderAvatarUrl(message.getSender().getAvatarUrl())
-                .type(message.getType())
-                .content(message.getContent())
-                .metadata(message.getMetadata())
-                .createdAt(message.getCreatedAt())
-                .editedAt(message.getEditedAt())
-                .deletedAt(message.getDeletedAt())
+                .id(conversation.getLastMessageId())
+                .conversationId(conversation.getId())
+                .senderId(sender != null ? sender.getId() : null)
+                .senderUsername(sender != null ? sender.getUsername() : null)
+                .senderDisplayName(sender != null ? sender.getDisplayName() : null)
+                .senderAvatarUrl(sender != null ? sender.getAvatarUrl() : null)
+                .content(conversation.getLastMessagePreview())
+                .createdAt(conversation.getLastMessageAt())
                 .build();
     }
 }
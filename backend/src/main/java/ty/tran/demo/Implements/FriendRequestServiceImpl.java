@@ -13,6 +13,7 @@ import ty.tran.demo.DTO.UserDTO;
 import ty.tran.demo.Entity.FriendRequest;
 import ty.tran.demo.Entity.Friendship;
 import ty.tran.demo.Entity.User;
+import ty.tran.demo.Services.ConversationAccessService;
 import ty.tran.demo.Services.FriendRequestService;
 
 import java.time.Instant;
@@ -28,6 +29,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
     private final FriendRequestDAO friendRequestDAO;
     private final FriendshipDAO friendshipDAO;
     private final UserDAO userDAO;
+    private final ConversationAccessService conversationAccessService;
 
     @Override
     public FriendRequestDTO sendFriendRequest(UUID senderId, SendFriendRequestDTO request) {
@@ -161,6 +163,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
                 .build();
         
         friendshipDAO.save(friendship);
+        conversationAccessService.evictFriendship(user1Id, user2Id);
     }
 
     private FriendRequestDTO convertToDTO(FriendRequest request) {
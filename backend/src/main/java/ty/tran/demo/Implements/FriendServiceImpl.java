@@ -7,6 +7,7 @@ import ty.tran.demo.DAO.*;
 import ty.tran.demo.DTO.SearchUserDTO;
 import ty.tran.demo.DTO.UserDTO;
 import ty.tran.demo.Entity.*;
+import ty.tran.demo.Services.ConversationAccessService;
 import ty.tran.demo.Services.FriendService;
 
 import java.util.List;
@@ -25,6 +26,8 @@ public class FriendServiceImpl implements FriendService {
     private final ConversationMemberDAO conversationMemberDAO;
     private final MessageDAO messageDAO;
     private final CallDAO callDAO;
+    private final ConversationAccessService conversationAccessService;
+    private final RecentMessageCache recentMessageCache;
 
     @Override
     @Transactional(readOnly = true)
@@ -84,6 +87,7 @@ public class FriendServiceImpl implements FriendService {
                 .ifPresent(friendship -> {
                     deleteAllRelatedData(userId, friendId);
                     friendshipDAO.delete(friendship);
+                    conversationAccessService.evictFriendship(userId, friendId);
                 });
     }
 
@@ -102,6 +106,8 @@ public class FriendServiceImpl implements FriendService {
                         directConversationDAO.deleteById(conversationId);
                         
                         conversationDAO.delete(directConversation);
+                        conversationAccessService.evictConversation(conversationId);
+                        recentMessageCache.evict(conversationId);
                         
                         System.out.println("Successfully deleted all data for direct conversation between users: " + user1Id + " and " + user2Id);
                     });
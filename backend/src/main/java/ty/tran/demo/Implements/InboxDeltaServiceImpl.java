@@ -0,0 +1,171 @@
+package ty.tran.demo.Implements;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ty.tran.demo.DTO.InboxDeltaBatchDTO;
+import ty.tran.demo.Event.MessageEvent;
+import ty.tran.demo.Services.ConversationActivityService;
+import ty.tran.demo.Services.InboxDeltaService;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class InboxDeltaServiceImpl implements InboxDeltaService {
+
+    // Members with their current counters and the conversation's last-message pointer, for all changed conversations at once
+    private static final String DELTA_SQL = """
+            SELECT cm.conversation_id, cm.user_id, cm.unread_count, c.updated_at,
+                   c.last_message_id, c.last_message_at, c.last_sender_id, c.last_message_preview,
+                   sender.display_name AS last_sender_display_name
+            FROM conversation_members cm
+            JOIN conversations c ON c.id = cm.conversation_id
+            LEFT JOIN users sender ON sender.id = c.last_sender_id
+            WHERE cm.conversation_id IN (:conversationIds)
+            """;
+
+    // Marks a conversation whose every member needs a delta
+    private static final Set<UUID> ALL_MEMBERS = Collections.unmodifiableSet(new HashSet<>());
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationActivityService conversationActivityService;
+    private final MeterRegistry meterRegistry;
+    // conversationId -> members to notify (ALL_MEMBERS for everyone)
+    private final ConcurrentHashMap<UUID, Set<UUID>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public InboxDeltaServiceImpl(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            ConversationActivityService conversationActivityService,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.conversationActivityService = conversationActivityService;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("chat.inbox-deltas.pending", pending, Map::size)
+                .description("Conversations with inbox changes waiting to be pushed")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(MessageEvent event) {
+        recordConversationChanged(event.conversationId());
+    }
+
+    @Override
+    public void recordConversationChanged(UUID conversationId) {
+        pending.put(conversationId, ALL_MEMBERS);
+    }
+
+    @Override
+    public void recordMembersChanged(UUID conversationId, Collection<UUID> userIds) {
+        pending.merge(conversationId, Set.copyOf(userIds), InboxDeltaServiceImpl::union);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.inbox-deltas.flush-interval-ms:250}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Written first, so the deltas carry the last-message pointer of the sends that queued them
+        conversationActivityService.flush();
+
+        Map<UUID, Set<UUID>> drained = new HashMap<>();
+        for (UUID conversationId : pending.keySet()) {
+            Set<UUID> recipients = pending.remove(conversationId);
+            if (recipients != null) {
+                drained.put(conversationId, recipients);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<UUID, List<InboxDeltaBatchDTO.Delta>> byUser = new HashMap<>();
+        try {
+            jdbcTemplate.query(DELTA_SQL, new MapSqlParameterSource("conversationIds", drained.keySet()), rs -> {
+                UUID conversationId = rs.getObject("conversation_id", UUID.class);
+                UUID userId = rs.getObject("user_id", UUID.class);
+                Set<UUID> recipients = drained.get(conversationId);
+                if (recipients != ALL_MEMBERS && !recipients.contains(userId)) {
+                    return;
+                }
+                byUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(InboxDeltaBatchDTO.Delta.builder()
+                        .conversationId(conversationId)
+                        .activityAt(conversationActivityService.getLastActivity(conversationId, toInstant(rs.getTimestamp("updated_at"))))
+                        .lastMessageId(rs.getObject("last_message_id", UUID.class))
+                        .lastSenderId(rs.getObject("last_sender_id", UUID.class))
+                        .lastSenderDisplayName(rs.getString("last_sender_display_name"))
+                        .lastMessagePreview(rs.getString("last_message_preview"))
+                        .lastMessageAt(toInstant(rs.getTimestamp("last_message_at")))
+                        .unreadCount(rs.getInt("unread_count"))
+                        .build());
+            });
+        } catch (Exception e) {
+            log.error("Error loading inbox deltas for {} conversations, will retry: {}", drained.size(), e.getMessage());
+            drained.forEach((conversationId, recipients) -> pending.merge(conversationId, recipients, InboxDeltaServiceImpl::union));
+            return;
+        } finally {
+            meterRegistry.timer("chat.inbox-deltas.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        byUser.forEach((userId, deltas) -> {
+            try {
+                messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/inbox", new InboxDeltaBatchDTO(deltas));
+            } catch (Exception e) {
+                log.error("Error pushing inbox deltas to user {}: {}", userId, e.getMessage());
+            }
+        });
+        meterRegistry.counter("chat.inbox-deltas.sent").increment(byUser.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static Set<UUID> union(Set<UUID> a, Set<UUID> b) {
+        if (a == ALL_MEMBERS || b == ALL_MEMBERS) {
+            return ALL_MEMBERS;
+        }
+        Set<UUID> merged = new HashSet<>(a);
+        merged.addAll(b);
+        return merged;
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -11,8 +12,8 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import ty.tran.demo.DAO.UserDAO;
-import ty.tran.demo.Entity.User;
+import ty.tran.demo.DTO.AuthenticatedUser;
+import ty.tran.demo.Services.AuthenticatedUserService;
 import ty.tran.demo.Services.JwtService;
 
 import java.util.Collections;
@@ -20,14 +21,15 @@ import java.util.Collections;
 import java.io.IOException;
 
 @Component
+@Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDAO userDAO;
+    private final AuthenticatedUserService authenticatedUserService;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDAO userDAO) {
+    public JwtAuthenticationFilter(JwtService jwtService, AuthenticatedUserService authenticatedUserService) {
         this.jwtService = jwtService;
-        this.userDAO = userDAO;
+        this.authenticatedUserService = authenticatedUserService;
     }
 
     @Override
@@ -55,33 +57,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            System.out.println("DEBUG - JWT Filter: Loading user details for: " + userEmail);
-            User user = this.userDAO.findByEmail(userEmail)
-                    .orElse(null);
-            
-            if (user != null) {
-                System.out.println("DEBUG - JWT Filter: User found: " + user.getEmail());
-                
-                if (jwtService.isTokenValid(jwt, user.getEmail())) {
-                    System.out.println("DEBUG - JWT Filter: Token is valid, setting authentication");
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            user, // Sử dụng Entity User thay vì UserDetails
-                            null,
-                            Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-                    );
-                    authToken.setDetails(
-                            new WebAuthenticationDetailsSource().buildDetails(request)
-                    );
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    System.out.println("DEBUG - JWT Filter: Authentication set successfully");
-                } else {
-                    System.out.println("DEBUG - JWT Filter: Token is invalid");
-                }
+            AuthenticatedUser user = authenticatedUserService.findByEmail(userEmail);
+
+            // extractUsername only returns the subject of a verified, unexpired token
+            if (user != null && user.isActive()) {
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        user,
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+                );
+                authToken.setDetails(
+                        new WebAuthenticationDetailsSource().buildDetails(request)
+                );
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             } else {
-                System.out.println("DEBUG - JWT Filter: User not found for email: " + userEmail);
+                log.debug("JWT filter: no active user for {}", userEmail);
             }
         } else {
-            System.out.println("DEBUG - JWT Filter: userEmail=" + userEmail + ", existingAuth=" + (SecurityContextHolder.getContext().getAuthentication() != null));
+            log.debug("JWT filter: token rejected or already authenticated");
         }
         filterChain.doFilter(request, response);
     }
@@ -0,0 +1,82 @@
+package ty.tran.demo.Implements;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ty.tran.demo.Services.LastMessageService;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class LastMessageServiceImpl implements LastMessageService {
+
+    // Characters kept in conversations.last_message_preview (see ConversationActivityServiceImpl)
+    public static final int PREVIEW_LENGTH = 120;
+
+    private static final String BACKFILL_CHUNK_SQL =
+            "SELECT id FROM conversations WHERE id > ? AND last_message_id IS NULL ORDER BY id LIMIT ?";
+
+    // Each chunk commits on its own and locks only its rows; a row a live send got to first is skipped
+    private static final String BACKFILL_SQL =
+            "UPDATE conversations c SET last_message_id = lm.id, last_message_at = lm.created_at, " +
+            "last_sender_id = lm.sender_id, last_message_preview = left(lm.content, " + PREVIEW_LENGTH + ") " +
+            "FROM conversations target CROSS JOIN LATERAL (" +
+            "  SELECT m.id, m.created_at, m.sender_id, m.content FROM messages m " +
+            "  WHERE m.conversation_id = target.id AND m.deleted_at IS NULL " +
+            "  ORDER BY m.created_at DESC, m.id DESC LIMIT 1) lm " +
+            "WHERE c.id = target.id AND target.id > ? AND target.id <= ? AND c.last_message_id IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean backfillEnabled;
+    private final int backfillChunkSize;
+    // Keyset position of the backfill; conversations without messages are passed over, not revisited
+    private UUID backfillAfter = new UUID(0, 0);
+    private boolean backfillDone;
+    private final ReentrantLock backfillLock = new ReentrantLock();
+
+    public LastMessageServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            @Value("${chat.last-message.backfill.enabled:true}") boolean backfillEnabled,
+            @Value("${chat.last-message.backfill.chunk-size:500}") int backfillChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.backfillEnabled = backfillEnabled;
+        this.backfillChunkSize = backfillChunkSize;
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${chat.last-message.backfill.interval-ms:1000}",
+            fixedDelayString = "${chat.last-message.backfill.interval-ms:1000}")
+    public void backfill() {
+        backfillLock.lock();
+        try {
+            doBackfill();
+        } finally {
+            backfillLock.unlock();
+        }
+    }
+
+    private void doBackfill() {
+        if (!backfillEnabled || backfillDone) {
+            return;
+        }
+        try {
+            List<UUID> chunk = jdbcTemplate.queryForList(BACKFILL_CHUNK_SQL, UUID.class, backfillAfter, backfillChunkSize);
+            if (chunk.isEmpty()) {
+                backfillDone = true;
+                log.info("Last-message backfill complete");
+                return;
+            }
+            UUID upTo = chunk.get(chunk.size() - 1);
+            int updated = jdbcTemplate.update(BACKFILL_SQL, backfillAfter, upTo);
+            log.debug("Last-message backfill: {} of {} conversations up to {}", updated, chunk.size(), upTo);
+            backfillAfter = upTo;
+        } catch (Exception e) {
+            log.error("Error backfilling last messages, will retry: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ty.tran.demo.Implements;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+import ty.tran.demo.DAO.MessageAttachmentDAO;
+import ty.tran.demo.DAO.MessageDAO;
+import ty.tran.demo.DAO.UserDAO;
+import ty.tran.demo.DTO.MessageAttachmentDTO;
+import ty.tran.demo.DTO.MessageDTO;
+import ty.tran.demo.Entity.Message;
+import ty.tran.demo.Entity.MessageAttachment;
+import ty.tran.demo.Entity.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a page of messages into DTOs with a fixed number of queries: reply-to messages,
+ * senders (of both) and attachments are each loaded in one batch and joined in memory.
+ * Only reads ids from the lazy associations, so no proxy is initialized one row at a time.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageHydrator {
+
+    private final MessageDAO messageDAO;
+    private final UserDAO userDAO;
+    private final MessageAttachmentDAO messageAttachmentDAO;
+
+    public MessageDTO hydrate(Message message) {
+        return hydrate(List.of(message)).get(0);
+    }
+
+    public List<MessageDTO> hydrate(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, Message> replies = loadReplies(messages);
+
+        Set<Object> senderRefs = new HashSet<>();
+        messages.forEach(m -> senderRefs.add(m.getSender()));
+        replies.values().forEach(m -> senderRefs.add(m.getSender()));
+        Map<UUID, User> senders = loadUsers(senderRefs);
+
+        Map<UUID, List<MessageAttachmentDTO>> attachments = loadAttachments(messages);
+
+        List<MessageDTO> result = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            MessageDTO dto = toDTO(message, senders);
+            dto.setAttachments(attachments.getOrDefault(message.getId(), List.of()));
+            if (message.getReplyTo() != null) {
+                Message reply = replies.get(message.getReplyTo().getId());
+                if (reply != null) {
+                    dto.setReplyTo(toReplyPreview(reply, senders));
+                }
+            }
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private Map<UUID, Message> loadReplies(List<Message> messages) {
+        Map<UUID, Message> replies = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (Message message : messages) {
+            Message reply = message.getReplyTo();
+            if (reply == null) {
+                continue;
+            }
+            if (Hibernate.isInitialized(reply)) {
+                replies.put(reply.getId(), reply);
+            } else {
+                missing.add(reply.getId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            messageDAO.findAllById(missing).forEach(m -> replies.put(m.getId(), m));
+        }
+        return replies;
+    }
+
+    private Map<UUID, User> loadUsers(Collection<Object> senderRefs) {
+        Map<UUID, User> users = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (Object ref : senderRefs) {
+            User user = (User) ref;
+            if (user == null) {
+                continue;
+            }
+            if (Hibernate.isInitialized(user)) {
+                users.put(user.getId(), user);
+            } else {
+                missing.add(user.getId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            users.putAll(userDAO.findAllById(missing).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity())));
+        }
+        return users;
+    }
+
+    private Map<UUID, List<MessageAttachmentDTO>> loadAttachments(List<Message> messages) {
+        List<UUID> messageIds = messages.stream().map(Message::getId).collect(Collectors.toList());
+        return messageAttachmentDAO.findByMessageIdIn(messageIds).stream()
+                .collect(Collectors.groupingBy(a -> a.getMessage().getId(),
+                        Collectors.mapping(MessageHydrator::toAttachmentDTO, Collectors.toList())));
+    }
+
+    private static MessageDTO toDTO(Message message, Map<UUID, User> senders) {
+        MessageDTO.MessageDTOBuilder builder = MessageDTO.builder()
+                .id(message.getId())
+                .conversationId(message.getConversation().getId())
+                .seq(message.getSeq())
+                .type(message.getType())
+                .content(message.getContent())
+                .metadata(message.getMetadata())
+                .createdAt(message.getCreatedAt())
+                .editedAt(message.getEditedAt())
+                .deletedAt(message.getDeletedAt());
+        applySender(builder, message, senders);
+        if (message.getReplyTo() != null) {
+            builder.replyToId(message.getReplyTo().getId());
+        }
+        return builder.build();
+    }
+
+    // Enough of the quoted message to render the reply header; no attachments or nested replies
+    private static MessageDTO toReplyPreview(Message reply, Map<UUID, User> senders) {
+        MessageDTO.MessageDTOBuilder builder = MessageDTO.builder()
+                .id(reply.getId())
+                .conversationId(reply.getConversation().getId())
+                .type(reply.getType())
+                .content(reply.getDeletedAt() == null ? reply.getContent() : null)
+                .createdAt(reply.getCreatedAt())
+                .deletedAt(reply.getDeletedAt());
+        applySender(builder, reply, senders);
+        return builder.build();
+    }
+
+    private static void applySender(MessageDTO.MessageDTOBuilder builder, Message message, Map<UUID, User> senders) {
+        if (message.getSender() == null) {
+            return;
+        }
+        UUID senderId = message.getSender().getId();
+        builder.senderId(senderId);
+        User sender = senders.get(senderId);
+        if (sender != null) {
+            builder.senderUsername(sender.getUsername())
+                    .senderDisplayName(sender.getDisplayName())
+                    .senderAvatarUrl(sender.getAvatarUrl());
+        }
+    }
+
+    private static MessageAttachmentDTO toAttachmentDTO(MessageAttachment attachment) {
+        return MessageAttachmentDTO.builder()
+                .id(attachment.getId())
+                .url(attachment.getUrl())
+                .mimeType(attachment.getMimeType())
+                .bytes(attachment.getBytes())
+                .width(attachment.getWidth())
+                .height(attachment.getHeight())
+                .durationMs(attachment.getDurationMs())
+                .sha256(attachment.getSha256())
+                .build();
+    }
+}
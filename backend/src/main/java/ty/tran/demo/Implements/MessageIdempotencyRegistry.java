@@ -0,0 +1,48 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ty.tran.demo.DTO.MessageDTO;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Remembers recently stored messages by (senderId, clientMessageId) so a client retrying a send
+ * after a reconnect gets the original message back. The unique constraint on
+ * messages(sender_id, client_message_id) covers retries that fall outside the window or a restart.
+ * Entries are never invalidated, so the registry needs nothing from other nodes: a retry that lands
+ * on a node which did not store the original misses here and is resolved by that constraint.
+ */
+@Component
+public class MessageIdempotencyRegistry {
+
+    private final Cache<IdempotencyKey, MessageDTO> sent;
+
+    public MessageIdempotencyRegistry(
+            MeterRegistry meterRegistry,
+            @Value("${chat.idempotency.max-size:100000}") long maxSize,
+            @Value("${chat.idempotency.window-seconds:600}") long windowSeconds) {
+        this.sent = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sent, "messageIdempotency");
+    }
+
+    public MessageDTO find(UUID senderId, String clientMessageId) {
+        return sent.getIfPresent(new IdempotencyKey(senderId, clientMessageId));
+    }
+
+    public void remember(UUID senderId, String clientMessageId, MessageDTO message) {
+        sent.put(new IdempotencyKey(senderId, clientMessageId), message);
+    }
+
+    private record IdempotencyKey(UUID senderId, String clientMessageId) {
+    }
+}
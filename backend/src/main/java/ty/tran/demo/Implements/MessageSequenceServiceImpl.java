@@ -0,0 +1,106 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ty.tran.demo.Services.MessageSequenceService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hi/lo allocation: conversations.seq_reserved is the highest number any server has claimed. A
+ * server claims a block of numbers with one UPDATE in its own short transaction, then hands them
+ * out from memory with an atomic increment, so a conversation's row is locked once per block
+ * rather than for the whole of every send. Threads that find the block used up each claim a new
+ * one and keep the first number of it; the block that loses the install race is left unused.
+ */
+@Service
+public class MessageSequenceServiceImpl implements MessageSequenceService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE conversations SET seq_reserved = seq_reserved + ? WHERE id = ? RETURNING seq_reserved";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reserveTransaction;
+    private final MeterRegistry meterRegistry;
+    private final int blockSize;
+    private final Cache<UUID, Block> blocks;
+
+    public MessageSequenceServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${chat.messages.seq.block-size:100}") int blockSize,
+            @Value("${chat.messages.seq.cache.max-size:50000}") long maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.blockSize = Math.max(1, blockSize);
+        // Commits before the send goes on, so no other server waits on the row for longer than the UPDATE
+        this.reserveTransaction = new TransactionTemplate(transactionManager);
+        this.reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // An evicted block's remaining numbers are skipped, which clients already treat as a gap
+        this.blocks = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+
+    @Override
+    public long next(UUID conversationId) {
+        Block current = blocks.getIfPresent(conversationId);
+        if (current != null) {
+            long next = current.take();
+            if (next > 0) {
+                return next;
+            }
+        }
+
+        Block claimed = reserve(conversationId);
+        long next = claimed.take();
+        // Install the rest of our block unless another thread already replaced the used-up one
+        blocks.asMap().compute(conversationId, (key, existing) ->
+                existing != null && existing.hasRemaining() ? existing : claimed);
+        return next;
+    }
+
+    private Block reserve(UUID conversationId) {
+        List<Long> reserved = reserveTransaction.execute(status ->
+                jdbcTemplate.queryForList(RESERVE_SQL, Long.class, blockSize, conversationId));
+        if (reserved == null || reserved.isEmpty()) {
+            throw new RuntimeException("Conversation not found");
+        }
+        meterRegistry.counter("chat.messages.seq.blocks").increment();
+        long hi = reserved.get(0);
+        return new Block(hi - blockSize + 1, hi);
+    }
+
+    // Numbers lo..hi of one conversation, claimed by this server
+    private static final class Block {
+        private final AtomicLong next;
+        private final long hi;
+
+        private Block(long lo, long hi) {
+            this.next = new AtomicLong(lo);
+            this.hi = hi;
+        }
+
+        // The next unused number, or 0 once the block is used up
+        long take() {
+            long value = next.getAndIncrement();
+            return value <= hi ? value : 0;
+        }
+
+        boolean hasRemaining() {
+            return next.get() <= hi;
+        }
+    }
+}
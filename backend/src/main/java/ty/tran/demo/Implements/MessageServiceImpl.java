@@ -3,19 +3,38 @@ package ty.tran.demo.Implements;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.domain.Slice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ty.tran.demo.DAO.*;
 import ty.tran.demo.DTO.*;
 import ty.tran.demo.Entity.*;
+import ty.tran.demo.Event.MessageEvent;
+import ty.tran.demo.Services.ConversationAccessService;
+import ty.tran.demo.Services.ConversationAccessService.ConversationAccess;
+import ty.tran.demo.Services.ConversationActivityService;
+import ty.tran.demo.Services.MessageSequenceService;
 import ty.tran.demo.Services.MessageService;
+import ty.tran.demo.Services.ReadReceiptService;
+import ty.tran.demo.Services.UnreadCounterService;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,15 +46,58 @@ public class MessageServiceImpl implements MessageService {
     private final MessageDAO messageDAO;
     private final ConversationDAO conversationDAO;
     private final ConversationMemberDAO conversationMemberDAO;
-    private final MessageReadDAO messageReadDAO;
     private final MessageAttachmentDAO messageAttachmentDAO;
     private final UserDAO userDAO;
-    private final FriendshipDAO friendshipDAO;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationAccessService conversationAccessService;
+    private final MessageHydrator messageHydrator;
+    private final RecentMessageCache recentMessageCache;
+    private final ReadReceiptService readReceiptService;
+    private final UnreadCounterService unreadCounterService;
+    private final ConversationActivityService conversationActivityService;
+    private final MessageSequenceService messageSequenceService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageIdempotencyRegistry idempotencyRegistry;
+    private final TransactionTemplate transactionTemplate;
     // Removed circular dependency - will use direct DAO access
 
+    @Value("${chat.search.stream-page-size:100}")
+    private int searchStreamPageSize;
+
+    @Value("${chat.search.stream-max-results:1000}")
+    private int searchStreamMaxResults;
+
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MessageDTO sendMessage(UUID senderId, SendMessageRequest request) {
+        String clientMessageId = request.getClientMessageId();
+        if (clientMessageId == null) {
+            return transactionTemplate.execute(status -> storeMessage(senderId, request));
+        }
+
+        // A retry from a reconnecting client gets the original message back, without a second insert or broadcast
+        MessageDTO original = idempotencyRegistry.find(senderId, clientMessageId);
+        if (original != null) {
+            log.info("Duplicate send of client message {} by user {}, returning message {}",
+                    clientMessageId, senderId, original.getId());
+            return original;
+        }
+
+        MessageDTO messageDTO;
+        try {
+            messageDTO = transactionTemplate.execute(status -> storeMessage(senderId, request));
+        } catch (DataIntegrityViolationException e) {
+            // The unique (sender_id, client_message_id) constraint caught a concurrent retry or one after a restart
+            messageDTO = transactionTemplate.execute(status -> messageDAO
+                    .findBySenderIdAndClientMessageId(senderId, clientMessageId)
+                    .map(this::convertToDTO)
+                    .orElseThrow(() -> e));
+            log.info("Duplicate send of client message {} by user {} resolved from database", clientMessageId, senderId);
+        }
+        idempotencyRegistry.remember(senderId, clientMessageId, messageDTO);
+        return messageDTO;
+    }
+
+    private MessageDTO storeMessage(UUID senderId, SendMessageRequest request) {
         // Validate user can send message in this conversation (includes friendship check for direct conversations)
         validateUserCanSendMessage(request.getConversationId(), senderId);
 
@@ -45,14 +107,8 @@ public class MessageServiceImpl implements MessageService {
         User sender = userDAO.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
 
-        // Check for duplicate messages (prevent spam) - only check within last 10 seconds
-        Instant tenSecondsAgo = Instant.now().minusSeconds(10);
-        List<Message> duplicates = messageDAO.findDuplicateMessages(
-                request.getConversationId(), senderId, request.getContent(), tenSecondsAgo);
-        if (!duplicates.isEmpty()) {
-            log.warn("Duplicate message detected within 10 seconds, allowing it");
-            // Don't throw error, just log it - users should be able to send the same message
-        }
+        // Taken from this server's block for the conversation; no row lock is held for the rest of the send
+        long seq = messageSequenceService.next(conversation.getId());
 
         // Create message
         Message message = Message.builder()
@@ -61,6 +117,8 @@ public class MessageServiceImpl implements MessageService {
                 .type(request.getType())
                 .content(request.getContent())
                 .metadata(request.getMetadata() != null ? request.getMetadata() : null)
+                .clientMessageId(request.getClientMessageId())
+                .seq(seq)
                 .createdAt(Instant.now())
                 .build();
 
@@ -71,8 +129,8 @@ public class MessageServiceImpl implements MessageService {
             message.setReplyTo(replyTo);
         }
 
-        // Save message
-        message = messageDAO.save(message);
+        // Save message (flushed so a duplicate client message id fails before any other write)
+        message = messageDAO.saveAndFlush(message);
 
         // Save attachments if any
         if (request.getAttachments() != null && !request.getAttachments().isEmpty()) {
@@ -91,15 +149,17 @@ public class MessageServiceImpl implements MessageService {
             }
         }
 
-        // Update conversation timestamp
-        conversation.setUpdatedAt(Instant.now());
-        conversationDAO.save(conversation);
+        // The conversation row's activity and last-message pointer are written behind, after commit
+        conversationActivityService.recordMessageSent(conversation.getId(), message.getCreatedAt());
+
+        // Bump unread badges of the other members
+        unreadCounterService.recordMessageSent(conversation.getId(), senderId);
 
         // Convert to DTO
         MessageDTO messageDTO = convertToDTO(message);
 
-        // Send real-time notification to conversation topic (all members will receive)
-        messagingTemplate.convertAndSend("/topic/conversation/" + conversation.getId(), messageDTO);
+        // Notify conversation topic subscribers once the message is committed
+        eventPublisher.publishEvent(MessageEvent.of(MessageEvent.Type.CREATED, messageDTO));
 
         log.info("Message sent: {} by user {} in conversation {}", message.getId(), senderId, conversation.getId());
         return messageDTO;
@@ -113,6 +173,11 @@ public class MessageServiceImpl implements MessageService {
 
         log.info("MessageServiceImpl: Getting messages for conversation {} with sort={}", 
             conversationId, pageable.getSort());
+
+        Optional<Page<MessageDTO>> recent = recentMessageCache.findPage(conversationId, pageable);
+        if (recent.isPresent()) {
+            return recent.get();
+        }
         
         Page<Message> messages = messageDAO.findActiveMessagesByConversationId(conversationId, pageable);
         
@@ -120,7 +185,7 @@ public class MessageServiceImpl implements MessageService {
             messages.getContent().size(), 
             messages.getContent().isEmpty() ? "none" : messages.getContent().get(0).getCreatedAt());
         
-        return messages.map(this::convertToDTO);
+        return new PageImpl<>(messageHydrator.hydrate(messages.getContent()), pageable, messages.getTotalElements());
     }
 
     @Override
@@ -129,8 +194,65 @@ public class MessageServiceImpl implements MessageService {
         // Validate user can access this conversation (includes friendship check for direct conversations)
         validateUserCanAccessConversation(conversationId, userId);
 
+        Optional<List<MessageDTO>> recent = recentMessageCache.findAfter(conversationId, after);
+        if (recent.isPresent()) {
+            return recent.get();
+        }
+
         List<Message> messages = messageDAO.findMessagesAfter(conversationId, after);
-        return messages.stream().map(this::convertToDTO).collect(Collectors.toList());
+        return messageHydrator.hydrate(messages);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getMessagesAfterSeq(UUID conversationId, UUID userId, long afterSeq, int limit) {
+        // Validate user can access this conversation (includes friendship check for direct conversations)
+        validateUserCanAccessConversation(conversationId, userId);
+
+        List<Message> messages = messageDAO.findByConversationIdAndSeqGreaterThanOrderBySeqAsc(
+                conversationId, afterSeq, PageRequest.of(0, limit));
+        return messageHydrator.hydrate(messages);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageSliceDTO getMessageHistory(UUID conversationId, UUID userId, String before, String after, int limit) {
+        // Validate user can access this conversation (includes friendship check for direct conversations)
+        validateUserCanAccessConversation(conversationId, userId);
+
+        if (before != null && after != null) {
+            throw new RuntimeException("Only one of before or after can be used");
+        }
+
+        // Slice fetches limit + 1 rows to know whether there is more, without a count query
+        Pageable pageable = PageRequest.of(0, limit);
+        Slice<Message> slice;
+        if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            slice = messageDAO.findSliceAfter(conversationId, cursor.createdAt(), cursor.id(), pageable);
+        } else if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            slice = messageDAO.findSliceBefore(conversationId, cursor.createdAt(), cursor.id(), pageable);
+        } else {
+            slice = messageDAO.findLatestSlice(conversationId, pageable);
+        }
+
+        List<Message> messages = new ArrayList<>(slice.getContent());
+        String nextCursor = null;
+        if (!messages.isEmpty()) {
+            // Continue from the last row in query order: the oldest going back, the newest going forward
+            Message last = messages.get(messages.size() - 1);
+            nextCursor = new MessageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        if (after == null) {
+            Collections.reverse(messages);
+        }
+
+        return MessageSliceDTO.builder()
+                .messages(messageHydrator.hydrate(messages))
+                .nextCursor(nextCursor)
+                .hasMore(slice.hasNext())
+                .build();
     }
 
     @Override
@@ -161,11 +283,12 @@ public class MessageServiceImpl implements MessageService {
         message.setContent(newContent);
         message.setEditedAt(Instant.now());
         message = messageDAO.save(message);
+        conversationActivityService.recordMessageChanged(message.getConversation().getId());
 
         MessageDTO messageDTO = convertToDTO(message);
 
-        // Send real-time update
-        messagingTemplate.convertAndSend("/topic/conversation/" + message.getConversation().getId(), messageDTO);
+        // Send real-time update after commit
+        eventPublisher.publishEvent(MessageEvent.of(MessageEvent.Type.EDITED, messageDTO));
 
         return messageDTO;
     }
@@ -175,28 +298,27 @@ public class MessageServiceImpl implements MessageService {
         Message message = messageDAO.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
 
+        // Validate user can access this conversation (includes friendship check for direct conversations)
+        ConversationAccess access = validateUserCanAccessConversation(message.getConversation().getId(), userId);
+
         // Validate user is the sender or admin
         boolean isSender = message.getSender().getId().equals(userId);
-        boolean isAdmin = false;
-        Optional<ConversationMember> member = conversationMemberDAO.findByConversationIdAndUserId(message.getConversation().getId(), userId);
-        if (member.isPresent() && (member.get().getRole() == ConversationMember.MemberRole.owner || member.get().getRole() == ConversationMember.MemberRole.admin)) {
-            isAdmin = true;
-        }
-
-        if (!isSender && !isAdmin) {
+        if (!isSender && !access.isAdmin()) {
             throw new RuntimeException("User can only delete their own messages or must be admin");
         }
 
-        // Validate user can access this conversation (includes friendship check for direct conversations)
-        validateUserCanAccessConversation(message.getConversation().getId(), userId);
+        // Before the message row is written: unread counters are always locked ahead of messages
+        unreadCounterService.recordMessageDeleted(message.getConversation().getId(),
+                message.getSender() != null ? message.getSender().getId() : null, message.getId(), message.getCreatedAt());
 
         message.setDeletedAt(Instant.now());
         messageDAO.save(message);
+        conversationActivityService.recordMessageChanged(message.getConversation().getId());
 
         MessageDTO messageDTO = convertToDTO(message);
 
-        // Send real-time update
-        messagingTemplate.convertAndSend("/topic/conversation/" + message.getConversation().getId(), messageDTO);
+        // Send real-time update after commit
+        eventPublisher.publishEvent(MessageEvent.of(MessageEvent.Type.DELETED, messageDTO));
     }
 
     @Override
@@ -207,28 +329,8 @@ public class MessageServiceImpl implements MessageService {
         // Validate user can access this conversation (includes friendship check for direct conversations)
         validateUserCanAccessConversation(message.getConversation().getId(), userId);
 
-        // Check if already read
-        MessageReadId readId = new MessageReadId(messageId, userId);
-        if (messageReadDAO.existsById(readId)) {
-            return; // Already read
-        }
-
-        // Mark as read
-        MessageRead messageRead = MessageRead.builder()
-                .id(readId)
-                .message(message)
-                .user(userDAO.findById(userId).orElseThrow(() -> new RuntimeException("User not found")))
-                .readAt(Instant.now())
-                .build();
-
-        messageReadDAO.save(messageRead);
-
-        // Update last read message in conversation member
-        ConversationMember member = conversationMemberDAO.findByConversationIdAndUserId(
-                message.getConversation().getId(), userId)
-                .orElseThrow(() -> new RuntimeException("User is not a member of this conversation"));
-        member.setLastReadMessageId(messageId);
-        conversationMemberDAO.save(member);
+        // Advance the member's read watermark (coalesced and flushed in batches)
+        readReceiptService.markRead(message.getConversation().getId(), userId, messageId, message.getCreatedAt());
     }
 
     @Override
@@ -238,9 +340,8 @@ public class MessageServiceImpl implements MessageService {
 
         // Get last message
         Optional<Message> lastMessage = messageDAO.findFirstByConversationIdOrderByCreatedAtDesc(conversationId);
-        if (lastMessage.isPresent()) {
-            markAsRead(lastMessage.get().getId(), userId);
-        }
+        lastMessage.ifPresent(message -> readReceiptService.markRead(
+                conversationId, userId, message.getId(), message.getCreatedAt()));
     }
 
     @Override
@@ -249,138 +350,118 @@ public class MessageServiceImpl implements MessageService {
         // Validate user can access this conversation (includes friendship check for direct conversations)
         validateUserCanAccessConversation(conversationId, userId);
 
-        // Get last read message timestamp
-        ConversationMember member = conversationMemberDAO.findByConversationIdAndUserId(conversationId, userId)
-                .orElseThrow(() -> new RuntimeException("User is not a member of this conversation"));
-
-        if (member.getLastReadMessageId() == null) {
-            // Count all messages
-            return messageDAO.countUnreadMessages(conversationId, Instant.EPOCH);
-        } else {
-            // Count messages after last read
-            Message lastReadMessage = messageDAO.findById(member.getLastReadMessageId())
-                    .orElseThrow(() -> new RuntimeException("Last read message not found"));
-            return messageDAO.countUnreadMessages(conversationId, lastReadMessage.getCreatedAt());
-        }
+        return unreadCounterService.getUnreadCount(conversationId, userId);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<MessageDTO> searchMessages(UUID conversationId, UUID userId, String searchTerm) {
+    public List<ReadStateDTO> getReadState(UUID conversationId, UUID userId) {
         // Validate user can access this conversation (includes friendship check for direct conversations)
         validateUserCanAccessConversation(conversationId, userId);
 
-        // This would require a custom query - simplified for now
-        List<Message> messages = messageDAO.findByConversationIdOrderByCreatedAtDesc(conversationId, Pageable.unpaged())
-                .getContent()
-                .stream()
-                .filter(m -> m.getContent() != null && m.getContent().toLowerCase().contains(searchTerm.toLowerCase()))
+        return readReceiptService.getReadState(conversationId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UUID> getSeenBy(UUID messageId, UUID userId) {
+        Message message = messageDAO.findById(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+
+        // Validate user can access this conversation (includes friendship check for direct conversations)
+        validateUserCanAccessConversation(message.getConversation().getId(), userId);
+
+        // Seen by every member whose watermark is at or past this message, except its sender
+        UUID senderId = message.getSender() != null ? message.getSender().getId() : null;
+        return readReceiptService.getReadState(message.getConversation().getId()).stream()
+                .filter(state -> !state.getUserId().equals(senderId))
+                .filter(state -> state.getLastReadMessageAt() != null
+                        && !state.getLastReadMessageAt().isBefore(message.getCreatedAt()))
+                .map(ReadStateDTO::getUserId)
                 .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<MessageSearchResultDTO> searchMessages(UUID conversationId, UUID userId, String searchTerm, Pageable pageable) {
+        // Validate user can access this conversation (includes friendship check for direct conversations)
+        validateUserCanAccessConversation(conversationId, userId);
 
-        return messages.stream().map(this::convertToDTO).collect(Collectors.toList());
+        return searchPage(conversationId, searchTerm, pageable);
     }
 
-    private MessageDTO convertToDTO(Message message) {
-        MessageDTO.MessageDTOBuilder builder = MessageDTO.builder()
-                .id(message.getId())
-                .conversationId(message.getConversation().getId())
-                .senderId(message.getSender().getId())
-                .senderUsername(message.getSender().getUsername())
-                .senderDisplayName(message.getSender().getDisplayName())
-                .senderAvatarUrl(message.getSender().getAvatarUrl())
-                .type(message.getType())
-                .content(message.getContent())
-                .metadata(message.getMetadata())
-                .createdAt(message.getCreatedAt())
-                .editedAt(message.getEditedAt())
-                .deletedAt(message.getDeletedAt());
-
-        // Set reply to if exists
-        if (message.getReplyTo() != null) {
-            builder.replyToId(message.getReplyTo().getId());
-            // For simplicity, we don't load the full reply message here
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamSearchMessages(UUID conversationId, UUID userId, String searchTerm, Consumer<MessageSearchResultDTO> sink) {
+        validateUserCanAccessConversation(conversationId, userId);
+
+        // Each page is read in its own short transaction so no connection is held while the client drains
+        // Pages keep a fixed size so page * size stays a valid offset; the last one is truncated instead
+        int sent = 0;
+        for (int page = 0; sent < searchStreamMaxResults; page++) {
+            Pageable pageable = PageRequest.of(page, searchStreamPageSize);
+            List<MessageSearchResultDTO> results = transactionTemplate.execute(status ->
+                    searchPage(conversationId, searchTerm, pageable));
+            int take = Math.min(results.size(), searchStreamMaxResults - sent);
+            results.subList(0, take).forEach(sink);
+            sent += take;
+            if (results.size() < searchStreamPageSize) {
+                break;
+            }
         }
+    }
 
-        // Load attachments
-        List<MessageAttachment> attachments = messageAttachmentDAO.findByMessageId(message.getId());
-        List<MessageAttachmentDTO> attachmentDTOs = attachments.stream()
-                .map(this::convertAttachmentToDTO)
-                .collect(Collectors.toList());
-        builder.attachments(attachmentDTOs);
+    private List<MessageSearchResultDTO> searchPage(UUID conversationId, String searchTerm, Pageable pageable) {
+        List<MessageSearchHit> hits = messageDAO.searchInConversation(conversationId, searchTerm, pageable);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
 
-        return builder.build();
+        // Load and hydrate the matched rows in one go, then restore rank order
+        Map<UUID, MessageDTO> messages = messageHydrator.hydrate(
+                        messageDAO.findAllById(hits.stream().map(MessageSearchHit::getId).collect(Collectors.toList())))
+                .stream()
+                .collect(Collectors.toMap(MessageDTO::getId, Function.identity()));
+
+        return hits.stream()
+                .filter(hit -> messages.containsKey(hit.getId()))
+                .map(hit -> MessageSearchResultDTO.builder()
+                        .message(messages.get(hit.getId()))
+                        .snippet(hit.getSnippet())
+                        .rank(hit.getRank() != null ? hit.getRank() : 0)
+                        .build())
+                .collect(Collectors.toList());
     }
 
-    private MessageAttachmentDTO convertAttachmentToDTO(MessageAttachment attachment) {
-        return MessageAttachmentDTO.builder()
-                .id(attachment.getId())
-                .url(attachment.getUrl())
-                .mimeType(attachment.getMimeType())
-                .bytes(attachment.getBytes())
-                .width(attachment.getWidth())
-                .height(attachment.getHeight())
-                .durationMs(attachment.getDurationMs())
-                .sha256(attachment.getSha256())
-                .build();
+    private MessageDTO convertToDTO(Message message) {
+        return messageHydrator.hydrate(message);
     }
 
     /**
      * Validates that a user can send messages in a conversation.
      * For direct conversations, also checks if users are friends.
      */
-    private void validateUserCanSendMessage(UUID conversationId, UUID userId) {
-        // First check if user is member of conversation
-        if (!conversationMemberDAO.existsByConversationIdAndUserId(conversationId, userId)) {
-            throw new RuntimeException("User is not a member of this conversation");
-        }
-
-        // For direct conversations, check if users are friends
-        Conversation conversation = conversationDAO.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+    private ConversationAccess validateUserCanSendMessage(UUID conversationId, UUID userId) {
+        ConversationAccess access = conversationAccessService.getAccess(conversationId, userId)
+                .orElseThrow(() -> new RuntimeException("User is not a member of this conversation"));
 
-        if (conversation.getType() == Conversation.ConversationType.direct) {
-            // Get the other user in the direct conversation
-            List<ConversationMember> members = conversationMemberDAO.findByConversationId(conversationId);
-            UUID otherUserId = members.stream()
-                    .map(member -> member.getUser().getId())
-                    .filter(id -> !id.equals(userId))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Invalid direct conversation"));
-
-            // Check if users are friends
-            if (!friendshipDAO.areFriends(userId, otherUserId)) {
-                throw new RuntimeException("Cannot send messages to non-friend users");
-            }
+        if (!access.isAllowed()) {
+            throw new RuntimeException("Cannot send messages to non-friend users");
         }
+        return access;
     }
 
     /**
      * Validates that a user can access a conversation.
      * For direct conversations, also checks if users are friends.
      */
-    private void validateUserCanAccessConversation(UUID conversationId, UUID userId) {
-        // First check if user is member of conversation
-        if (!conversationMemberDAO.existsByConversationIdAndUserId(conversationId, userId)) {
-            throw new RuntimeException("User is not a member of this conversation");
-        }
-
-        // For direct conversations, check if users are friends
-        Conversation conversation = conversationDAO.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+    private ConversationAccess validateUserCanAccessConversation(UUID conversationId, UUID userId) {
+        ConversationAccess access = conversationAccessService.getAccess(conversationId, userId)
+                .orElseThrow(() -> new RuntimeException("User is not a member of this conversation"));
 
-        if (conversation.getType() == Conversation.ConversationType.direct) {
-            // Get the other user in the direct conversation
-            List<ConversationMember> members = conversationMemberDAO.findByConversationId(conversationId);
-            UUID otherUserId = members.stream()
-                    .map(member -> member.getUser().getId())
-                    .filter(id -> !id.equals(userId))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Invalid direct conversation"));
-
-            // Check if users are friends
-            if (!friendshipDAO.areFriends(userId, otherUserId)) {
-                throw new RuntimeException("Cannot access conversation with non-friend users");
-            }
+        if (!access.isAllowed()) {
+            throw new RuntimeException("Cannot access conversation with non-friend users");
         }
+        return access;
     }
 }
@@ -0,0 +1,238 @@
+package ty.tran.demo.Implements;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ty.tran.demo.Config.BlockingEnqueuePolicy;
+import ty.tran.demo.Event.ClusterEnvelope;
+import ty.tran.demo.Services.ClusterBus;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ClusterBus over Postgres LISTEN/NOTIFY. Notifications are "I:{node}:{json}" when the envelope
+ * fits in a NOTIFY payload, or "R:{node}:{id}" pointing at a row of cluster_bus_payloads otherwise.
+ * Enabled with chat.cluster.enabled=true; without it the app runs as a single node.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.cluster.enabled", havingValue = "true")
+@Slf4j
+public class PostgresClusterBus implements ClusterBus {
+
+    private static final String CHANNEL = "chat_cluster";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int inlineMaxBytes;
+    private final Duration payloadRetention;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<ClusterEnvelope>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+    // Envelopes already delivered on this node
+    private final Cache<UUID, Boolean> seen;
+    // One thread keeps publish order; a full queue makes the sender wait rather than publish out of turn
+    private final ThreadPoolExecutor publisher;
+    private volatile boolean running = true;
+    private Thread listenerThread;
+
+    public PostgresClusterBus(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${chat.cluster.inline-max-bytes:7000}") int inlineMaxBytes,
+            @Value("${chat.cluster.payload-retention-seconds:300}") long payloadRetentionSeconds,
+            @Value("${chat.cluster.publish-queue-capacity:10000}") int publishQueueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.inlineMaxBytes = inlineMaxBytes;
+        this.payloadRetention = Duration.ofSeconds(payloadRetentionSeconds);
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+        this.publisher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(publishQueueCapacity),
+                new CustomizableThreadFactory("cluster-bus-publish-"),
+                new BlockingEnqueuePolicy("cluster-bus-publish", meterRegistry));
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerThread = new Thread(this::listen, "cluster-bus-listen");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Cluster bus started as node {}", nodeId);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(ClusterEnvelope envelope) {
+        publisher.execute(() -> send(envelope));
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterEnvelope> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void onReconnect(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cluster.payload-cleanup-interval-ms:60000}")
+    public void deleteExpiredPayloads() {
+        try {
+            jdbcTemplate.update("DELETE FROM cluster_bus_payloads WHERE created_at < ?",
+                    Timestamp.from(Instant.now().minus(payloadRetention)));
+        } catch (Exception e) {
+            log.error("Error deleting expired cluster bus payloads: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisher.shutdown();
+        if (!publisher.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Cluster bus publisher did not drain within 5 seconds");
+        }
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void send(ClusterEnvelope envelope) {
+        try {
+            String json = objectMapper.writeValueAsString(envelope);
+            String notification;
+            if (json.getBytes(StandardCharsets.UTF_8).length <= inlineMaxBytes) {
+                notification = "I:" + nodeId + ":" + json;
+                meterRegistry.counter("chat.cluster.published", "mode", "inline").increment();
+            } else {
+                // Committed before the NOTIFY goes out, so receivers always find it
+                jdbcTemplate.update("INSERT INTO cluster_bus_payloads (id, body) VALUES (?, ?)", envelope.eventId(), json);
+                notification = "R:" + nodeId + ":" + envelope.eventId();
+                meterRegistry.counter("chat.cluster.published", "mode", "reference").increment();
+            }
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) rs -> { }, CHANNEL, notification);
+        } catch (Exception e) {
+            meterRegistry.counter("chat.cluster.publish.errors").increment();
+            log.error("Error publishing {} to the cluster bus: {}", envelope.destination(), e.getMessage());
+        }
+    }
+
+    // Runs on its own connection outside the pool, reconnecting after failures
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Cluster bus listening on {}", CHANNEL);
+                if (connectedBefore) {
+                    reconnected();
+                }
+                connectedBefore = true;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                // Notifications sent while disconnected are lost; they are live updates only
+                log.error("Cluster bus listener lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void reconnected() {
+        meterRegistry.counter("chat.cluster.reconnects").increment();
+        for (Runnable listener : reconnectListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Error handling cluster bus reconnect: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void receive(String notification) {
+        String[] parts = notification.split(":", 3);
+        if (parts.length != 3 || nodeId.equals(parts[1])) {
+            return;
+        }
+        try {
+            String json = "R".equals(parts[0])
+                    ? jdbcTemplate.queryForObject("SELECT body FROM cluster_bus_payloads WHERE id = ?", String.class, UUID.fromString(parts[2]))
+                    : parts[2];
+            ClusterEnvelope envelope = objectMapper.readValue(json, ClusterEnvelope.class);
+            if (seen.asMap().putIfAbsent(envelope.eventId(), Boolean.TRUE) != null) {
+                meterRegistry.counter("chat.cluster.duplicates").increment();
+                return;
+            }
+            meterRegistry.counter("chat.cluster.received").increment();
+            for (Consumer<ClusterEnvelope> listener : listeners) {
+                listener.accept(envelope);
+            }
+        } catch (Exception e) {
+            log.error("Error handling cluster bus notification: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ty.tran.demo.Implements;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Sends one payload to many destinations while serializing it only once. encode() turns the
+ * payload into an immutable Message<byte[]> (JSON, or text/plain for Strings); every send() reuses that byte array and only
+ * copies the headers to set the destination, so a fan-out costs one Jackson pass however many
+ * members or topics it reaches.
+ */
+@Component
+public class PreEncodedBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final Counter encodes;
+    private final Counter sends;
+
+    public PreEncodedBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.encodes = Counter.builder("chat.broadcast.encodes")
+                .description("Payloads serialized for a broadcast").register(meterRegistry);
+        this.sends = Counter.builder("chat.broadcast.sends")
+                .description("Destinations a pre-encoded payload was sent to").register(meterRegistry);
+    }
+
+    // Same bytes and content type the template's converters would produce: Strings go out as
+    // text/plain like StringMessageConverter, everything else as JSON like the Jackson converter
+    public Message<byte[]> encode(Object payload) {
+        byte[] body;
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (payload instanceof String text) {
+            body = text.getBytes(StandardCharsets.UTF_8);
+            accessor.setContentType(new MimeType(MimeTypeUtils.TEXT_PLAIN, StandardCharsets.UTF_8));
+        } else {
+            try {
+                body = objectMapper.writeValueAsBytes(payload);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to encode broadcast payload: " + e.getMessage(), e);
+            }
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        }
+        // Immutable, so each send() copies the headers instead of stamping its destination on the shared message
+        accessor.setImmutable();
+        encodes.increment();
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    public void send(String destination, Message<byte[]> encoded) {
+        messagingTemplate.send(destination, encoded);
+        sends.increment();
+    }
+
+    // Equivalent of convertAndSendToUser; the user destination resolver fans it out to the user's sessions
+    public void sendToUser(UUID userId, String destination, Message<byte[]> encoded) {
+        send(messagingTemplate.getUserDestinationPrefix() + userId + destination, encoded);
+    }
+}
@@ -0,0 +1,265 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ty.tran.demo.DTO.PresenceUpdateDTO;
+import ty.tran.demo.Event.ConversationEvent;
+import ty.tran.demo.Services.CacheInvalidationBus;
+import ty.tran.demo.Services.PresenceService;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class PresenceServiceImpl implements PresenceService {
+
+    // Other nodes drop their conversation index entries of these users, or of these deleted conversations
+    private static final String USERS_INVALIDATION = "presence-index-users";
+    private static final String CONVERSATIONS_INVALIDATION = "presence-index-conversations";
+
+    // Never moves last_seen_at backwards
+    private static final String LAST_SEEN_SQL =
+            "UPDATE users SET last_seen_at = ? WHERE id = ? AND (last_seen_at IS NULL OR last_seen_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PreEncodedBroadcaster broadcaster;
+    private final CacheInvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final long offlineGraceMs;
+    // userId -> open STOMP session ids; a user is online while the set is non-empty
+    private final ConcurrentHashMap<UUID, Set<String>> sessions = new ConcurrentHashMap<>();
+    // Offline announcements waiting out the grace period
+    private final ConcurrentHashMap<UUID, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Instant> pendingLastSeen = new ConcurrentHashMap<>();
+    private final Cache<UUID, Set<UUID>> conversationIndex;
+    // Bumped on every membership change so a load that raced one is not installed
+    private final AtomicLong indexVersion = new AtomicLong();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("presence-"));
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public PresenceServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            PreEncodedBroadcaster broadcaster,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${chat.presence.offline-grace-ms:10000}") long offlineGraceMs,
+            @Value("${chat.presence.index.max-size:100000}") long indexMaxSize,
+            @Value("${chat.presence.index.ttl-seconds:600}") long indexTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.broadcaster = broadcaster;
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.offlineGraceMs = offlineGraceMs;
+        this.conversationIndex = Caffeine.newBuilder()
+                .maximumSize(indexMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(indexTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, conversationIndex, "presenceConversationIndex");
+        invalidationBus.subscribe(USERS_INVALIDATION, this::invalidateUsers, this::invalidateIndex);
+        invalidationBus.subscribe(CONVERSATIONS_INVALIDATION, this::invalidateConversations, this::invalidateIndex);
+        Gauge.builder("chat.presence.online", sessions, Map::size)
+                .description("Users with at least one open WebSocket session")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void sessionConnected(UUID userId, String sessionId) {
+        boolean[] cameOnline = new boolean[1];
+        sessions.compute(userId, (id, open) -> {
+            if (open == null) {
+                open = ConcurrentHashMap.newKeySet();
+                // A reconnect inside the grace period cancels the pending offline; nobody saw it leave
+                ScheduledFuture<?> offline = pendingOffline.remove(id);
+                cameOnline[0] = offline == null || !offline.cancel(false);
+            }
+            open.add(sessionId);
+            return open;
+        });
+        if (cameOnline[0]) {
+            broadcast(userId, "online");
+        }
+        pendingLastSeen.merge(userId, Instant.now(), PresenceServiceImpl::latest);
+    }
+
+    @Override
+    public void sessionDisconnected(UUID userId, String sessionId) {
+        // Spring may report the same disconnect twice; removing by session id keeps the count right
+        sessions.computeIfPresent(userId, (id, open) -> {
+            open.remove(sessionId);
+            if (!open.isEmpty()) {
+                return open;
+            }
+            pendingOffline.put(id, scheduler.schedule(() -> goOffline(id), offlineGraceMs, TimeUnit.MILLISECONDS));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isOnline(UUID userId) {
+        // Still shown online during the grace period
+        return sessions.containsKey(userId) || pendingOffline.containsKey(userId);
+    }
+
+    @Override
+    public Set<UUID> getConversationIds(UUID userId) {
+        Set<UUID> conversationIds = conversationIndex.getIfPresent(userId);
+        return conversationIds != null ? conversationIds : loadConversationIds(userId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationEvent(ConversationEvent event) {
+        indexVersion.incrementAndGet();
+        switch (event.type()) {
+            case CREATED, MEMBER_ADDED, MEMBER_REMOVED -> {
+                List<UUID> userIds = new ArrayList<>(event.recipientIds());
+                if (event.conversation() != null && event.conversation().getMembers() != null) {
+                    event.conversation().getMembers().forEach(member -> userIds.add(member.getUserId()));
+                }
+                invalidateUsers(userIds);
+                invalidationBus.publish(USERS_INVALIDATION, userIds);
+            }
+            case DELETED -> {
+                invalidateConversations(List.of(event.conversationId()));
+                invalidationBus.publish(CONVERSATIONS_INVALIDATION, List.of(event.conversationId()));
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void invalidateUsers(List<UUID> userIds) {
+        indexVersion.incrementAndGet();
+        conversationIndex.invalidateAll(userIds);
+    }
+
+    // Every member loses the conversation; drop the entries that list it
+    private void invalidateConversations(List<UUID> conversationIds) {
+        indexVersion.incrementAndGet();
+        conversationIndex.asMap().values()
+                .removeIf(indexed -> conversationIds.stream().anyMatch(indexed::contains));
+    }
+
+    private void invalidateIndex() {
+        indexVersion.incrementAndGet();
+        conversationIndex.invalidateAll();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.presence.last-seen-flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        Map<UUID, Instant> drained = new ConcurrentHashMap<>();
+        for (UUID userId : pendingLastSeen.keySet()) {
+            Instant seenAt = pendingLastSeen.remove(userId);
+            if (seenAt == null) {
+                continue;
+            }
+            drained.put(userId, seenAt);
+            Timestamp timestamp = Timestamp.from(seenAt);
+            batch.add(new Object[] { timestamp, userId, timestamp });
+        }
+
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(LAST_SEEN_SQL, batch);
+        } catch (Exception e) {
+            log.error("Error flushing last-seen for {} users, will retry: {}", batch.size(), e.getMessage());
+            drained.forEach((userId, seenAt) -> pendingLastSeen.merge(userId, seenAt, PresenceServiceImpl::latest));
+        } finally {
+            meterRegistry.timer("chat.presence.last-seen.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private void goOffline(UUID userId) {
+        // Only announce if no session came back and this is still the scheduled transition
+        boolean[] wentOffline = new boolean[1];
+        sessions.compute(userId, (id, open) -> {
+            if (open == null && pendingOffline.remove(id) != null) {
+                wentOffline[0] = true;
+            }
+            return open;
+        });
+        if (wentOffline[0]) {
+            pendingLastSeen.merge(userId, Instant.now(), PresenceServiceImpl::latest);
+            broadcast(userId, "offline");
+        }
+    }
+
+    private void broadcast(UUID userId, String status) {
+        try {
+            Message<byte[]> update = broadcaster.encode(PresenceUpdateDTO.of(userId, status));
+            for (UUID conversationId : getConversationIds(userId)) {
+                broadcaster.send("/topic/conversation/" + conversationId + "/presence", update);
+            }
+            meterRegistry.counter("chat.presence.transitions", "status", status).increment();
+        } catch (Exception e) {
+            log.error("Error broadcasting presence {} for user {}: {}", status, userId, e.getMessage());
+        }
+    }
+
+    // Queries outside the cache's compute lock: a JDBC call inside it would pin a virtual thread's carrier
+    private Set<UUID> loadConversationIds(UUID userId) {
+        long version = indexVersion.get();
+        Set<UUID> loaded = ConcurrentHashMap.newKeySet();
+        loaded.addAll(jdbcTemplate.queryForList(
+                "SELECT conversation_id FROM conversation_members WHERE user_id = ?", UUID.class, userId));
+        Set<UUID> installed = conversationIndex.asMap().compute(userId, (key, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return indexVersion.get() == version ? loaded : null;
+        });
+        return installed != null ? installed : loaded;
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,221 @@
+package ty.tran.demo.Implements;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ty.tran.demo.DAO.ConversationMemberDAO;
+import ty.tran.demo.DTO.ReadReceiptBatchDTO;
+import ty.tran.demo.DTO.ReadStateDTO;
+import ty.tran.demo.Services.InboxDeltaService;
+import ty.tran.demo.Services.ReadReceiptService;
+import ty.tran.demo.Services.UnreadCounterService;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class ReadReceiptServiceImpl implements ReadReceiptService {
+
+    // Guarded so a late flush never moves a watermark backwards. The unread counter is recounted
+    // from the new watermark in the same statement, over the messages the counters already include
+    // (see UnreadCounterServiceImpl for the definition).
+    private static final String UPDATE_SQL =
+            "UPDATE conversation_members cm SET last_read_message_id = ?, last_read_message_at = ?, " +
+            "unread_count = (SELECT count(*) FROM messages m WHERE m.conversation_id = cm.conversation_id " +
+            "  AND m.unread_counted AND m.deleted_at IS NULL AND m.sender_id IS DISTINCT FROM cm.user_id " +
+            "  AND m.created_at > greatest(?, cm.joined_at)) " +
+            "WHERE cm.conversation_id = ? AND cm.user_id = ? " +
+            "AND (cm.last_read_message_at IS NULL OR cm.last_read_message_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConversationMemberDAO conversationMemberDAO;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+    private final UnreadCounterService unreadCounterService;
+    private final InboxDeltaService inboxDeltaService;
+    private final ConcurrentHashMap<ReadKey, Watermark> pending = new ConcurrentHashMap<>();
+    // Drained from pending but not yet written, still visible to readers
+    private final ConcurrentHashMap<ReadKey, Watermark> flushing = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public ReadReceiptServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ConversationMemberDAO conversationMemberDAO,
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            UnreadCounterService unreadCounterService,
+            InboxDeltaService inboxDeltaService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.conversationMemberDAO = conversationMemberDAO;
+        this.messagingTemplate = messagingTemplate;
+        this.meterRegistry = meterRegistry;
+        this.unreadCounterService = unreadCounterService;
+        this.inboxDeltaService = inboxDeltaService;
+        Gauge.builder("chat.read-receipts.pending", pending, Map::size)
+                .description("Read watermarks waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void markRead(UUID conversationId, UUID userId, UUID messageId, Instant messageCreatedAt) {
+        pending.merge(new ReadKey(conversationId, userId),
+                new Watermark(messageId, messageCreatedAt, Instant.now()),
+                Watermark::latest);
+    }
+
+    @Override
+    public List<ReadStateDTO> getReadState(UUID conversationId) {
+        return conversationMemberDAO.findByConversationId(conversationId).stream()
+                .map(member -> {
+                    UUID userId = member.getId().getUserId();
+                    Watermark watermark = overlay(new ReadKey(conversationId, userId),
+                            member.getLastReadMessageId() != null
+                                    ? new Watermark(member.getLastReadMessageId(), member.getLastReadMessageAt(), null)
+                                    : null);
+                    return ReadStateDTO.builder()
+                            .userId(userId)
+                            .lastReadMessageId(watermark != null ? watermark.messageId() : null)
+                            .lastReadMessageAt(watermark != null ? watermark.messageAt() : null)
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Instant getLastReadMessageAt(UUID conversationId, UUID userId, Instant persistedLastReadMessageAt) {
+        Watermark watermark = overlay(new ReadKey(conversationId, userId), null);
+        if (watermark == null) {
+            return persistedLastReadMessageAt;
+        }
+        if (persistedLastReadMessageAt == null || watermark.messageAt().isAfter(persistedLastReadMessageAt)) {
+            return watermark.messageAt();
+        }
+        return persistedLastReadMessageAt;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.read-receipts.flush-interval-ms:500}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ReadKey> keys = new ArrayList<>();
+        List<Watermark> watermarks = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (ReadKey key : pending.keySet()) {
+            Watermark watermark = pending.get(key);
+            if (watermark == null) {
+                continue;
+            }
+            flushing.put(key, watermark);
+            pending.remove(key, watermark);
+            keys.add(key);
+            watermarks.add(watermark);
+            Timestamp messageAt = Timestamp.from(watermark.messageAt());
+            batch.add(new Object[] { watermark.messageId(), messageAt, messageAt, key.conversationId(), key.userId(), messageAt });
+        }
+
+        long start = System.nanoTime();
+        int[] updated;
+        try {
+            // Locked first so the recount sees any counter catch-up that committed ahead of it
+            Set<UUID> conversationIds = keys.stream().map(ReadKey::conversationId).collect(Collectors.toSet());
+            updated = transactionTemplate.execute(status -> {
+                unreadCounterService.lockCounters(conversationIds);
+                return jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            });
+        } catch (Exception e) {
+            log.error("Error flushing {} read watermarks, will retry: {}", batch.size(), e.getMessage());
+            flushing.forEach((key, watermark) -> pending.merge(key, watermark, Watermark::latest));
+            flushing.clear();
+            return;
+        } finally {
+            meterRegistry.timer("chat.read-receipts.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        flushing.clear();
+
+        // Only watermarks that actually moved are announced, one frame per conversation
+        Map<UUID, List<ReadReceiptBatchDTO.Receipt>> receipts = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                continue;
+            }
+            ReadKey key = keys.get(i);
+            Watermark watermark = watermarks.get(i);
+            receipts.computeIfAbsent(key.conversationId(), id -> new ArrayList<>())
+                    .add(new ReadReceiptBatchDTO.Receipt(key.userId(), watermark.messageId(), watermark.readAt().toEpochMilli()));
+        }
+        receipts.forEach((conversationId, conversationReceipts) -> {
+            unreadCounterService.recordRecounted(conversationId);
+            // The readers' badges dropped; their other devices learn it from the inbox queue
+            inboxDeltaService.recordMembersChanged(conversationId,
+                    conversationReceipts.stream().map(ReadReceiptBatchDTO.Receipt::getUserId).toList());
+            try {
+                messagingTemplate.convertAndSend("/topic/conversation/" + conversationId + "/read",
+                        new ReadReceiptBatchDTO(conversationId, conversationReceipts));
+            } catch (Exception e) {
+                log.error("Error broadcasting read receipts for conversation {}: {}", conversationId, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Watermark overlay(ReadKey key, Watermark persisted) {
+        return Watermark.latest(Watermark.latest(persisted, flushing.get(key)), pending.get(key));
+    }
+
+    private record ReadKey(UUID conversationId, UUID userId) {
+    }
+
+    private record Watermark(UUID messageId, Instant messageAt, Instant readAt) {
+
+        private static final Comparator<Watermark> POSITION = Comparator
+                .comparing(Watermark::messageAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Watermark::messageId);
+
+        static Watermark latest(Watermark a, Watermark b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return POSITION.compare(a, b) >= 0 ? a : b;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ty.tran.demo.DAO.MessageDAO;
+import ty.tran.demo.DTO.MessageAttachmentDTO;
+import ty.tran.demo.DTO.MessageDTO;
+import ty.tran.demo.Entity.Message;
+import ty.tran.demo.Event.ConversationEvent;
+import ty.tran.demo.Event.MessageEvent;
+import ty.tran.demo.Services.CacheInvalidationBus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the newest hydrated messages of recently read conversations in memory so that
+ * "open a chat" and "what's new since X" are answered without touching Postgres.
+ *
+ * A tail is seeded from the database on the first miss and afterwards kept current from
+ * committed message events. Tails are immutable snapshots replaced under the cache's per-key
+ * lock, and the whole cache is bounded by an estimated byte budget. MessageDTO is mutable and
+ * callers fill in per-reader fields, so messages are copied on the way in and on the way out.
+ */
+@Component
+public class RecentMessageCache {
+
+    // Other nodes drop their tails of these conversations; their copies never see this node's events
+    private static final String INVALIDATION = "message-tails";
+
+    private static final Comparator<MessageDTO> CHRONOLOGICAL =
+            Comparator.comparing(MessageDTO::getCreatedAt).thenComparing(MessageDTO::getId);
+
+    private final MessageDAO messageDAO;
+    private final MessageHydrator messageHydrator;
+    private final CacheInvalidationBus invalidationBus;
+    private final int capacity;
+    private final Cache<UUID, Tail> tails;
+    // Bumped for every event, present tail or not, so a seed that raced a commit is discarded
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+    private final Counter hits;
+    private final Counter misses;
+
+    public RecentMessageCache(
+            MessageDAO messageDAO,
+            MessageHydrator messageHydrator,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${chat.message-tail.capacity:100}") int capacity,
+            @Value("${chat.message-tail.max-bytes:67108864}") long maxBytes) {
+        this.messageDAO = messageDAO;
+        this.messageHydrator = messageHydrator;
+        this.invalidationBus = invalidationBus;
+        this.capacity = capacity;
+        this.tails = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((UUID conversationId, Tail tail) -> (int) Math.min(Integer.MAX_VALUE, tail.bytes()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tails, "messageTail");
+        invalidationBus.subscribe(INVALIDATION, conversationIds -> conversationIds.forEach(this::invalidate), this::invalidateAll);
+        this.hits = Counter.builder("chat.message-tail.reads").tag("result", "hit")
+                .description("Message reads answered from the in-memory tail").register(meterRegistry);
+        this.misses = Counter.builder("chat.message-tail.reads").tag("result", "miss")
+                .description("Message reads that had to go to the database").register(meterRegistry);
+        Gauge.builder("chat.message-tail.resident.bytes", tails,
+                        cache -> cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Estimated memory held by cached message tails")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers getMessages when sorted by createdAt and the requested page lies inside the tail,
+     * or anywhere when the tail holds the whole conversation.
+     */
+    public Optional<Page<MessageDTO>> findPage(UUID conversationId, Pageable pageable) {
+        Sort.Order order = singleCreatedAtOrder(pageable.getSort());
+        if (order == null) {
+            return record(Optional.empty());
+        }
+
+        Tail tail = getOrSeed(conversationId);
+        if (tail == null) {
+            return record(Optional.empty());
+        }
+
+        List<MessageDTO> active = tail.messages().stream()
+                .filter(m -> m.getDeletedAt() == null)
+                .collect(Collectors.toCollection(ArrayList::new));
+        long from = pageable.getOffset();
+        long to = from + pageable.getPageSize();
+        if (order.isDescending()) {
+            if (to > active.size() && !tail.complete()) {
+                return record(Optional.empty());
+            }
+            Collections.reverse(active);
+        } else if (!tail.complete()) {
+            return record(Optional.empty());
+        }
+
+        List<MessageDTO> content = active.subList((int) Math.min(from, active.size()), (int) Math.min(to, active.size()));
+        return record(Optional.of(new PageImpl<>(copies(content), pageable, tail.activeTotal())));
+    }
+
+    // Answers getMessagesAfter when nothing newer than "after" can have been trimmed from the tail
+    public Optional<List<MessageDTO>> findAfter(UUID conversationId, Instant after) {
+        Tail tail = getOrSeed(conversationId);
+        if (tail == null) {
+            return record(Optional.empty());
+        }
+        List<MessageDTO> messages = tail.messages();
+        if (!tail.complete() && (messages.isEmpty() || messages.get(0).getCreatedAt().isAfter(after))) {
+            return record(Optional.empty());
+        }
+        return record(Optional.of(messages.stream()
+                .filter(m -> m.getCreatedAt().isAfter(after))
+                .map(RecentMessageCache::copyOf)
+                .collect(Collectors.toList())));
+    }
+
+    public void evict(UUID conversationId) {
+        invalidate(conversationId);
+        invalidationBus.publish(INVALIDATION, List.of(conversationId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(MessageEvent event) {
+        tails.asMap().compute(event.conversationId(), (conversationId, tail) -> {
+            bump(conversationId);
+            if (tail == null) {
+                return null;
+            }
+            return switch (event.type()) {
+                case CREATED -> tail.withCreated(copyOf(event.message()), capacity);
+                case EDITED, DELETED -> tail.withUpdated(copyOf(event.message()));
+            };
+        });
+        invalidationBus.publish(INVALIDATION, List.of(event.conversationId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationEvent(ConversationEvent event) {
+        if (event.type() == ConversationEvent.Type.DELETED) {
+            evict(event.conversationId());
+        }
+    }
+
+    private Tail getOrSeed(UUID conversationId) {
+        Tail tail = tails.getIfPresent(conversationId);
+        if (tail != null) {
+            return tail;
+        }
+
+        long version = versions.get(stripe(conversationId));
+        Slice<Message> recent = messageDAO.findRecentSlice(conversationId, PageRequest.of(0, capacity));
+        List<MessageDTO> messages = new ArrayList<>(messageHydrator.hydrate(recent.getContent()));
+        messages.sort(CHRONOLOGICAL);
+        long activeTotal = recent.hasNext()
+                ? messageDAO.countByConversationIdAndDeletedAtIsNull(conversationId)
+                : messages.stream().filter(m -> m.getDeletedAt() == null).count();
+        Tail seeded = Tail.of(messages, !recent.hasNext(), activeTotal);
+
+        return tails.asMap().compute(conversationId, (key, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            // Install only if no message was committed in this conversation while we were reading
+            return versions.get(stripe(key)) == version ? seeded : null;
+        });
+    }
+
+    private void invalidate(UUID conversationId) {
+        bump(conversationId);
+        tails.invalidate(conversationId);
+    }
+
+    private void invalidateAll() {
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+        tails.invalidateAll();
+    }
+
+    private void bump(UUID conversationId) {
+        versions.incrementAndGet(stripe(conversationId));
+    }
+
+    private int stripe(UUID conversationId) {
+        return Math.floorMod(conversationId.hashCode(), versions.length());
+    }
+
+    private <T> Optional<T> record(Optional<T> result) {
+        (result.isPresent() ? hits : misses).increment();
+        return result;
+    }
+
+    private static List<MessageDTO> copies(List<MessageDTO> messages) {
+        List<MessageDTO> copies = new ArrayList<>(messages.size());
+        for (MessageDTO message : messages) {
+            copies.add(copyOf(message));
+        }
+        return copies;
+    }
+
+    // Deep enough that nothing a caller can set reaches the cached instance; metadata is read-only JSON
+    private static MessageDTO copyOf(MessageDTO message) {
+        MessageDTO copy = message.toBuilder().build();
+        if (message.getReplyTo() != null) {
+            copy.setReplyTo(copyOf(message.getReplyTo()));
+        }
+        if (message.getAttachments() != null) {
+            copy.setAttachments(message.getAttachments().stream()
+                    .map(attachment -> attachment.toBuilder().build())
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return copy;
+    }
+
+    private static Sort.Order singleCreatedAtOrder(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.size() != 1 || !"createdAt".equals(orders.get(0).getProperty())) {
+            return null;
+        }
+        return orders.get(0);
+    }
+
+    /**
+     * Oldest-first run of the newest messages of one conversation, deleted ones included
+     * (getMessagesAfter returns them). complete means nothing older exists.
+     */
+    private record Tail(List<MessageDTO> messages, boolean complete, long activeTotal, long bytes) {
+
+        static Tail of(List<MessageDTO> messages, boolean complete, long activeTotal) {
+            long bytes = 64;
+            for (MessageDTO message : messages) {
+                bytes += estimateBytes(message);
+            }
+            return new Tail(List.copyOf(messages), complete, activeTotal, bytes);
+        }
+
+        Tail withCreated(MessageDTO message, int capacity) {
+            if (messages.stream().anyMatch(m -> m.getId().equals(message.getId()))) {
+                return withUpdated(message);
+            }
+            // Concurrent commits can arrive out of order, so insert by position rather than append
+            List<MessageDTO> updated = new ArrayList<>(messages);
+            int index = Collections.binarySearch(updated, message, CHRONOLOGICAL);
+            updated.add(index < 0 ? -index - 1 : index, message);
+            boolean stillComplete = complete;
+            while (updated.size() > capacity) {
+                updated.remove(0);
+                stillComplete = false;
+            }
+            return Tail.of(updated, stillComplete, activeTotal + (message.getDeletedAt() == null ? 1 : 0));
+        }
+
+        // Replaces an edited or deleted message and refreshes reply previews that quote it
+        Tail withUpdated(MessageDTO message) {
+            long total = activeTotal;
+            List<MessageDTO> updated = new ArrayList<>(messages.size());
+            for (MessageDTO existing : messages) {
+                if (existing.getId().equals(message.getId())) {
+                    if (existing.getDeletedAt() == null && message.getDeletedAt() != null) {
+                        total--;
+                    }
+                    updated.add(message);
+                } else if (existing.getReplyTo() != null && existing.getReplyTo().getId().equals(message.getId())) {
+                    MessageDTO copy = copyOf(existing);
+                    copy.setReplyTo(previewOf(message));
+                    updated.add(copy);
+                } else {
+                    updated.add(existing);
+                }
+            }
+            return Tail.of(updated, complete, total);
+        }
+
+        private static MessageDTO previewOf(MessageDTO message) {
+            return MessageDTO.builder()
+                    .id(message.getId())
+                    .conversationId(message.getConversationId())
+                    .senderId(message.getSenderId())
+                    .senderUsername(message.getSenderUsername())
+                    .senderDisplayName(message.getSenderDisplayName())
+                    .senderAvatarUrl(message.getSenderAvatarUrl())
+                    .type(message.getType())
+                    .content(message.getDeletedAt() == null ? message.getContent() : null)
+                    .createdAt(message.getCreatedAt())
+                    .deletedAt(message.getDeletedAt())
+                    .build();
+        }
+
+        // Rough heap estimate: object headers and references plus UTF-16 string payloads
+        private static long estimateBytes(MessageDTO message) {
+            long bytes = 160
+                    + stringBytes(message.getContent())
+                    + stringBytes(message.getSenderUsername())
+                    + stringBytes(message.getSenderDisplayName())
+                    + stringBytes(message.getSenderAvatarUrl());
+            if (message.getMetadata() != null) {
+                bytes += 256;
+            }
+            if (message.getAttachments() != null) {
+                for (MessageAttachmentDTO attachment : message.getAttachments()) {
+                    bytes += 96 + stringBytes(attachment.getUrl()) + stringBytes(attachment.getMimeType())
+                            + stringBytes(attachment.getSha256());
+                }
+            }
+            if (message.getReplyTo() != null) {
+                bytes += estimateBytes(message.getReplyTo());
+            }
+            return bytes;
+        }
+
+        private static long stringBytes(String value) {
+            return value == null ? 0 : 40 + 2L * value.length();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @Transactional
@@ -26,6 +27,9 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     @Autowired
     private JwtService jwtService;
 
+    // A lock rather than synchronized: the body does JDBC, which would pin a virtual thread to its carrier
+    private final ReentrantLock updateLock = new ReentrantLock();
+
     @Override
     @Transactional
     public void saveRefreshToken(String token, User user) {
@@ -51,10 +55,11 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
 
     @Override
     @Transactional
-    public synchronized void updateRefreshToken(String oldToken, String newToken) {
+    public void updateRefreshToken(String oldToken, String newToken) {
         // Find the existing token and update it instead of deleting
         logger.info("Updating refresh token from old to new");
         
+        updateLock.lock();
         try {
             RefreshToken existingToken = refreshTokenDAO.findByToken(oldToken)
                 .orElseThrow(() -> new RuntimeException("Refresh token not found"));
@@ -70,6 +75,8 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
             // In this case, we'll just log it and continue
             logger.warn("Old refresh token not found, might have been updated by another request: {}", e.getMessage());
             // Don't throw exception, just log the warning
+        } finally {
+            updateLock.unlock();
         }
     }
 
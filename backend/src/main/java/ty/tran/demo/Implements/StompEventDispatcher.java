@@ -0,0 +1,116 @@
+package ty.tran.demo.Implements;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ty.tran.demo.Config.BlockingEnqueuePolicy;
+import ty.tran.demo.Event.ConversationEvent;
+import ty.tran.demo.Event.MessageEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans domain events out to STOMP destinations once the publishing transaction has committed.
+ * Events are queued on single-threaded stripes chosen by conversation id, so frames for one
+ * conversation keep their commit order while different conversations dispatch in parallel.
+ */
+@Component
+@Slf4j
+public class StompEventDispatcher {
+
+    private final PreEncodedBroadcaster broadcaster;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor[] stripes;
+
+    public StompEventDispatcher(
+            PreEncodedBroadcaster broadcaster,
+            MeterRegistry meterRegistry,
+            @Value("${chat.dispatch.stripes:4}") int stripeCount,
+            @Value("${chat.dispatch.queue-capacity:10000}") int queueCapacity) {
+        this.broadcaster = broadcaster;
+        this.meterRegistry = meterRegistry;
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    new CustomizableThreadFactory("stomp-dispatch-" + i + "-"),
+                    // A full stripe makes the committing thread wait for room; running the frame there would overtake the queue
+                    new BlockingEnqueuePolicy("stomp-dispatch", meterRegistry));
+        }
+        Gauge.builder("chat.outbox.queued", this, StompEventDispatcher::queuedEvents)
+                .description("Committed events waiting to be dispatched to STOMP")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(MessageEvent event) {
+        submit(event.conversationId(), event.type().name(), event.occurredAt(), () ->
+                broadcaster.send("/topic/conversation/" + event.conversationId(), broadcaster.encode(event.message())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationEvent(ConversationEvent event) {
+        submit(event.conversationId(), event.type().name(), event.occurredAt(), () -> {
+            if (event.conversation() != null) {
+                // Serialized once for every recipient's queue and the conversation topic
+                Message<byte[]> conversation = broadcaster.encode(event.conversation());
+                for (UUID recipientId : event.recipientIds()) {
+                    broadcaster.sendToUser(recipientId, "/queue/conversations", conversation);
+                }
+                if (event.type() == ConversationEvent.Type.UPDATED) {
+                    broadcaster.send("/topic/conversation/" + event.conversationId(), conversation);
+                }
+            }
+            if (event.notice() != null) {
+                broadcaster.send("/topic/conversation/" + event.conversationId(), broadcaster.encode(event.notice()));
+            }
+        });
+    }
+
+    private void submit(UUID conversationId, String eventType, Instant occurredAt, Runnable dispatch) {
+        stripes[Math.floorMod(conversationId.hashCode(), stripes.length)].execute(() -> {
+            meterRegistry.timer("chat.outbox.lag", "event", eventType)
+                    .record(Duration.between(occurredAt, Instant.now()));
+            long start = System.nanoTime();
+            try {
+                dispatch.run();
+            } catch (Exception e) {
+                log.error("Error dispatching {} event for conversation {}: {}", eventType, conversationId, e.getMessage());
+            } finally {
+                meterRegistry.timer("chat.outbox.dispatch", "event", eventType)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private double queuedEvents() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("STOMP dispatch stripe did not drain within 5 seconds");
+            }
+        }
+    }
+}
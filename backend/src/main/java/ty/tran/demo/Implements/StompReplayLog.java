@@ -0,0 +1,129 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent frames per destination, so a reconnecting client can be sent what it missed instead of
+ * refetching over REST. Each recorded frame gets a position "{epoch}-{generation}:{n}", where n
+ * counts up per buffer, epoch identifies this server process and generation the buffer itself: a
+ * buffer dropped for size or idleness starts over at 1 under a new generation. A position from
+ * another process or buffer, or one older than the buffer, cannot be replayed and the client is
+ * told to resync.
+ *
+ * Buffers are bounded per destination in frames (chat.replay.capacity) and payload bytes
+ * (chat.replay.max-bytes), and in number of destinations, and are dropped when no frame has been recorded or replayed for chat.replay.ttl-seconds.
+ */
+@Component
+public class StompReplayLog {
+
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong generations = new AtomicLong();
+    private final int capacity;
+    private final long maxBytes;
+    private final Cache<String, Buffer> buffers;
+
+    public StompReplayLog(
+            MeterRegistry meterRegistry,
+            @Value("${chat.replay.capacity:200}") int capacity,
+            @Value("${chat.replay.max-bytes:65536}") long maxBytes,
+            @Value("${chat.replay.max-destinations:50000}") long maxDestinations,
+            @Value("${chat.replay.ttl-seconds:900}") long ttlSeconds) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.buffers = Caffeine.newBuilder()
+                .maximumSize(maxDestinations)
+                .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "stompReplay");
+    }
+
+    // Returns the position assigned to the frame
+    public String record(String destination, byte[] payload, MimeType contentType) {
+        Buffer buffer = buffers.get(destination,
+                key -> new Buffer(epoch + "-" + generations.incrementAndGet() + ":", capacity, maxBytes));
+        return buffer.append(payload, contentType).position();
+    }
+
+    /**
+     * Frames recorded after the given position, oldest first; empty when the client is current, and
+     * null when the position cannot be served (other process or buffer, malformed, or rolled out of the buffer).
+     */
+    public List<Frame> since(String destination, String position) {
+        Buffer buffer = buffers.getIfPresent(destination);
+        if (buffer == null || !position.startsWith(buffer.prefix)) {
+            return null;
+        }
+        long after;
+        try {
+            after = Long.parseLong(position.substring(buffer.prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return buffer.since(after);
+    }
+
+    public record Frame(long n, String position, byte[] payload, MimeType contentType) {
+    }
+
+    private static final class Buffer {
+
+        // "{epoch}-{generation}:", shared by the positions of every frame of this buffer
+        private final String prefix;
+        private final int capacity;
+        private final long maxBytes;
+        private final ArrayDeque<Frame> frames;
+        private long last;
+        private long bytes;
+
+        Buffer(String prefix, int capacity, long maxBytes) {
+            this.prefix = prefix;
+            this.capacity = capacity;
+            this.maxBytes = maxBytes;
+            this.frames = new ArrayDeque<>();
+        }
+
+        // Only in-memory work under the monitor
+        synchronized Frame append(byte[] payload, MimeType contentType) {
+            last++;
+            Frame frame = new Frame(last, prefix + last, payload, contentType);
+            frames.addLast(frame);
+            bytes += payload.length;
+            // A frame larger than the whole budget is not kept; clients behind it resync
+            while (!frames.isEmpty() && (frames.size() > capacity || bytes > maxBytes)) {
+                bytes -= frames.pollFirst().payload().length;
+            }
+            return frame;
+        }
+
+        synchronized List<Frame> since(long after) {
+            if (after >= last) {
+                return List.of();
+            }
+            // The oldest frame still held must directly follow the client's position
+            if (frames.isEmpty() || frames.peekFirst().n() > after + 1) {
+                return null;
+            }
+            List<Frame> missed = new ArrayList<>((int) (last - after));
+            for (Frame frame : frames) {
+                if (frame.n() > after) {
+                    missed.add(frame);
+                }
+            }
+            return missed;
+        }
+    }
+}
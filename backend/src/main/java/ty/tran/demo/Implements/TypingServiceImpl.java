@@ -0,0 +1,136 @@
+package ty.tran.demo.Implements;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ty.tran.demo.DTO.TypingStateDTO;
+import ty.tran.demo.Services.PresenceService;
+import ty.tran.demo.Services.TypingService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class TypingServiceImpl implements TypingService {
+
+    private final PresenceService presenceService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long expireMs;
+    // conversationId -> (userId -> expiry in epoch millis); inner maps are only touched under the outer key's lock
+    private final ConcurrentHashMap<UUID, Map<UUID, Long>> typers = new ConcurrentHashMap<>();
+    // Conversations whose set of typers changed since the last frame
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter accepted;
+    private final Counter suppressed;
+    private final Counter rejected;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public TypingServiceImpl(
+            PresenceService presenceService,
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${chat.typing.expire-ms:5000}") long expireMs) {
+        this.presenceService = presenceService;
+        this.messagingTemplate = messagingTemplate;
+        this.expireMs = expireMs;
+        this.accepted = Counter.builder("chat.typing.frames").tag("result", "broadcast")
+                .description("Typing frames that changed who is typing").register(meterRegistry);
+        this.suppressed = Counter.builder("chat.typing.frames").tag("result", "suppressed")
+                .description("Typing frames that only extended an existing state").register(meterRegistry);
+        this.rejected = Counter.builder("chat.typing.frames").tag("result", "rejected")
+                .description("Typing frames from users who are not members of the conversation").register(meterRegistry);
+    }
+
+    @Override
+    public void update(UUID conversationId, UUID userId, boolean typing) {
+        // Membership from the presence index, which the user's connect already loaded
+        if (!presenceService.getConversationIds(userId).contains(conversationId)) {
+            rejected.increment();
+            return;
+        }
+
+        boolean[] changed = new boolean[1];
+        if (typing) {
+            long expiresAt = System.currentTimeMillis() + expireMs;
+            typers.compute(conversationId, (id, users) -> {
+                if (users == null) {
+                    users = new HashMap<>();
+                }
+                // Leading edge: only the start is announced, later frames just keep it alive
+                changed[0] = users.put(userId, expiresAt) == null;
+                return users;
+            });
+        } else {
+            typers.computeIfPresent(conversationId, (id, users) -> {
+                changed[0] = users.remove(userId) != null;
+                return users.isEmpty() ? null : users;
+            });
+        }
+
+        if (changed[0]) {
+            dirty.add(conversationId);
+            accepted.increment();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    @Override
+    public void clearUser(UUID userId) {
+        for (UUID conversationId : presenceService.getConversationIds(userId)) {
+            update(conversationId, userId, false);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedRateString = "${chat.typing.interval-ms:250}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        // Trailing stop for clients that went silent without sending one
+        long now = System.currentTimeMillis();
+        for (UUID conversationId : typers.keySet()) {
+            typers.computeIfPresent(conversationId, (id, users) -> {
+                if (users.values().removeIf(expiresAt -> expiresAt <= now)) {
+                    dirty.add(id);
+                }
+                return users.isEmpty() ? null : users;
+            });
+        }
+
+        for (Iterator<UUID> it = dirty.iterator(); it.hasNext(); ) {
+            UUID conversationId = it.next();
+            it.remove();
+            List<UUID> userIds = new ArrayList<>();
+            typers.computeIfPresent(conversationId, (id, users) -> {
+                userIds.addAll(users.keySet());
+                return users;
+            });
+            try {
+                messagingTemplate.convertAndSend("/topic/conversation/" + conversationId + "/typing",
+                        new TypingStateDTO(conversationId, userIds, now));
+            } catch (Exception e) {
+                log.error("Error broadcasting typing state for conversation {}: {}", conversationId, e.getMessage());
+            }
+        }
+    }
+}
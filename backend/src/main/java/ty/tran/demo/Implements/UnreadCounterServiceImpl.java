@@ -0,0 +1,342 @@
+package ty.tran.demo.Implements;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ty.tran.demo.Services.CacheInvalidationBus;
+import ty.tran.demo.Services.InboxDeltaService;
+import ty.tran.demo.Services.UnreadCounterService;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * messages.unread_counted says whether a message is already included in its conversation's
+ * unread_count values. Sends only mark their conversation; a flush then flags every uncounted
+ * message and adds it to each member's counter in one statement per conversation, so a burst of
+ * sends costs one write per member and a message is counted at most once, whatever order the
+ * sends committed in. Recounts (read watermark moved, reconciliation) count flagged messages only,
+ * so a message still in flight is left for the next flush.
+ *
+ * Every writer of unread_count locks the conversation's member rows first, in (conversation_id,
+ * user_id) order, and only then touches messages. Under READ COMMITTED the statement that follows
+ * the lock sees whatever an earlier writer committed, so a recount never overwrites a catch-up it
+ * raced with, and the fixed order keeps the writers from deadlocking each other.
+ */
+@Service
+@Slf4j
+public class UnreadCounterServiceImpl implements UnreadCounterService {
+
+    // Other nodes drop their cached counters of these conversations
+    private static final String INVALIDATION = "unread-counters";
+
+    private static final String UNREAD_SINCE_WATERMARK =
+            "m.conversation_id = cm.conversation_id AND m.deleted_at IS NULL AND m.sender_id IS DISTINCT FROM cm.user_id " +
+            "AND m.created_at > greatest(coalesce(cm.last_read_message_at, '-infinity'::timestamptz), cm.joined_at)";
+
+    private static final String LOCK_SQL =
+            "SELECT 1 FROM conversation_members WHERE conversation_id IN (:conversationIds) " +
+            "ORDER BY conversation_id, user_id FOR NO KEY UPDATE";
+
+    private static final String CATCH_UP_SQL =
+            "WITH fresh AS (UPDATE messages SET unread_counted = true " +
+            "  WHERE conversation_id = ? AND NOT unread_counted " +
+            "  RETURNING conversation_id, sender_id, created_at, deleted_at) " +
+            "UPDATE conversation_members cm SET " +
+            "unread_count = cm.unread_count + (SELECT count(*) FROM fresh m WHERE " + UNREAD_SINCE_WATERMARK + ") " +
+            "WHERE cm.conversation_id = ? AND EXISTS (SELECT 1 FROM fresh m WHERE " + UNREAD_SINCE_WATERMARK + ")";
+
+    // Only when the counters already include the message, and only for members who had not read past it
+    private static final String DECREMENT_SQL =
+            "UPDATE conversation_members SET unread_count = unread_count - 1 " +
+            "WHERE conversation_id = ? AND user_id IS DISTINCT FROM ? AND unread_count > 0 " +
+            "AND greatest(coalesce(last_read_message_at, '-infinity'::timestamptz), joined_at) < ? " +
+            "AND EXISTS (SELECT 1 FROM messages WHERE id = ? AND unread_counted)";
+
+    private static final String RECONCILE_LOCK_SQL =
+            "SELECT 1 FROM conversation_members cm JOIN conversations c ON c.id = cm.conversation_id " +
+            "WHERE c.updated_at >= ? ORDER BY cm.conversation_id, cm.user_id FOR NO KEY UPDATE OF cm";
+
+    // Recounts members of recently active conversations and fixes only the rows that drifted
+    private static final String RECONCILE_SQL =
+            "UPDATE conversation_members cm SET unread_count = actual.unread_count " +
+            "FROM (SELECT m2.conversation_id, m2.user_id, " +
+            "        (SELECT count(*) FROM messages m WHERE m.conversation_id = m2.conversation_id " +
+            "           AND m.unread_counted AND m.deleted_at IS NULL AND m.sender_id IS DISTINCT FROM m2.user_id " +
+            "           AND m.created_at > greatest(coalesce(m2.last_read_message_at, '-infinity'::timestamptz), m2.joined_at)" +
+            "        ) AS unread_count " +
+            "      FROM conversation_members m2 " +
+            "      JOIN conversations c ON c.id = m2.conversation_id " +
+            "      WHERE c.updated_at >= ?) actual " +
+            "WHERE cm.conversation_id = actual.conversation_id AND cm.user_id = actual.user_id " +
+            "AND cm.unread_count <> actual.unread_count " +
+            "RETURNING cm.conversation_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final InboxDeltaService inboxDeltaService;
+    private final CacheInvalidationBus invalidationBus;
+    // conversationId -> (userId -> unread count) for every member of the conversation
+    private final Cache<UUID, Map<UUID, Integer>> counters;
+    // Bumped on every change, cached or not, so a load that raced a commit is not installed
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+    // Conversations with committed sends or recounts whose counters have not caught up yet
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    // Drained from pending but not yet written
+    private final Set<UUID> flushing = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Duration reconcileOverlap;
+    private Instant lastReconciledAt;
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    public UnreadCounterServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            InboxDeltaService inboxDeltaService,
+            CacheInvalidationBus invalidationBus,
+            @Value("${chat.unread.cache.max-size:50000}") long maxSize,
+            @Value("${chat.unread.reconcile-interval-ms:300000}") long reconcileIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.inboxDeltaService = inboxDeltaService;
+        this.invalidationBus = invalidationBus;
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counters, "unreadCounters");
+        invalidationBus.subscribe(INVALIDATION, conversationIds -> conversationIds.forEach(this::invalidate), this::invalidateAll);
+        this.reconcileOverlap = Duration.ofMillis(reconcileIntervalMs);
+        // The first pass after startup covers the last day of activity
+        this.lastReconciledAt = Instant.now().minus(Duration.ofDays(1));
+    }
+
+    @Override
+    public int getUnreadCount(UUID conversationId, UUID userId) {
+        Map<UUID, Integer> members = counters.getIfPresent(conversationId);
+        if (members == null) {
+            members = load(conversationId);
+        }
+        return members.getOrDefault(userId, 0);
+    }
+
+    @Override
+    public void recordMessageSent(UUID conversationId, UUID senderId) {
+        afterCommit(() -> {
+            pending.add(conversationId);
+            counters.asMap().compute(conversationId, (key, members) -> {
+                bump(key);
+                if (members != null) {
+                    members.replaceAll((userId, count) -> userId.equals(senderId) ? count : count + 1);
+                }
+                return members;
+            });
+        });
+    }
+
+    @Override
+    public void recordMessageDeleted(UUID conversationId, UUID senderId, UUID messageId, Instant messageCreatedAt) {
+        lockCounters(List.of(conversationId));
+        // A message the flush has not counted yet is skipped by it once deleted, so there is nothing to take back
+        jdbcTemplate.update(DECREMENT_SQL, conversationId, senderId, Timestamp.from(messageCreatedAt), messageId);
+        afterCommit(() -> evictConversation(conversationId));
+    }
+
+    @Override
+    public void lockCounters(Collection<UUID> conversationIds) {
+        if (conversationIds.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.query(LOCK_SQL, new MapSqlParameterSource("conversationIds", conversationIds), rs -> {
+        });
+    }
+
+    @Override
+    public void recordRecounted(UUID conversationId) {
+        afterCommit(() -> {
+            pending.add(conversationId);
+            evictConversation(conversationId);
+        });
+    }
+
+    @Override
+    public void evictConversation(UUID conversationId) {
+        invalidate(conversationId);
+        // Again after commit, so a load that read the old rows in between is dropped too
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            afterCommit(() -> invalidate(conversationId));
+        }
+        invalidationBus.publish(INVALIDATION, List.of(conversationId));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.unread.flush-interval-ms:250}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UUID> conversationIds = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (UUID conversationId : pending) {
+            flushing.add(conversationId);
+            pending.remove(conversationId);
+            conversationIds.add(conversationId);
+            batch.add(new Object[] { conversationId, conversationId });
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockCounters(conversationIds);
+                jdbcTemplate.batchUpdate(CATCH_UP_SQL, batch);
+            });
+        } catch (Exception e) {
+            log.error("Error catching up unread counters of {} conversations, will retry: {}", batch.size(), e.getMessage());
+            pending.addAll(flushing);
+            return;
+        } finally {
+            flushing.clear();
+            meterRegistry.timer("chat.unread.flush").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        // Other nodes only saw the sends as frames; their cached counters are behind
+        invalidationBus.publish(INVALIDATION, conversationIds);
+        // Deltas pushed for the sends themselves read the counters before this caught up
+        conversationIds.forEach(inboxDeltaService::recordConversationChanged);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${chat.unread.reconcile-interval-ms:300000}",
+            initialDelayString = "${chat.unread.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            doReconcile();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void doReconcile() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        try {
+            Timestamp since = Timestamp.from(lastReconciledAt.minus(reconcileOverlap));
+            List<UUID> repaired = transactionTemplate.execute(status -> {
+                jdbcTemplate.query(RECONCILE_LOCK_SQL, rs -> {
+                }, since);
+                return jdbcTemplate.queryForList(RECONCILE_SQL, UUID.class, since);
+            });
+            repaired.stream().distinct().forEach(conversationId -> {
+                recordRecounted(conversationId);
+                inboxDeltaService.recordConversationChanged(conversationId);
+            });
+            meterRegistry.counter("chat.unread.reconciled").increment(repaired.size());
+            if (!repaired.isEmpty()) {
+                log.info("Repaired {} drifted unread counters", repaired.size());
+            }
+            lastReconciledAt = startedAt;
+        } catch (Exception e) {
+            log.error("Error reconciling unread counters: {}", e.getMessage());
+        } finally {
+            meterRegistry.timer("chat.unread.reconcile").record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private Map<UUID, Integer> load(UUID conversationId) {
+        long version = versions.get(stripe(conversationId));
+        // Rows of a conversation that is still catching up miss its latest sends
+        boolean settled = !pending.contains(conversationId) && !flushing.contains(conversationId);
+        Map<UUID, Integer> loaded = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT user_id, unread_count FROM conversation_members WHERE conversation_id = ?",
+                rs -> {
+                    loaded.put(rs.getObject("user_id", UUID.class), rs.getInt("unread_count"));
+                },
+                conversationId);
+
+        // Install only if no counter changed while we were reading; otherwise just answer from the read
+        counters.asMap().compute(conversationId, (key, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return settled && versions.get(stripe(key)) == version ? loaded : null;
+        });
+        return loaded;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void invalidate(UUID conversationId) {
+        bump(conversationId);
+        counters.invalidate(conversationId);
+    }
+
+    private void invalidateAll() {
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+        counters.invalidateAll();
+    }
+
+    private void bump(UUID conversationId) {
+        versions.incrementAndGet(stripe(conversationId));
+    }
+
+    private int stripe(UUID conversationId) {
+        return Math.floorMod(conversationId.hashCode(), versions.length());
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ty.tran.demo.DAO.UserDAO;
 import ty.tran.demo.Entity.User;
+import ty.tran.demo.Services.AuthenticatedUserService;
 import ty.tran.demo.Services.UserService;
 
 @Service
@@ -14,6 +15,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserDAO userDAO;
 
+    @Autowired
+    private AuthenticatedUserService authenticatedUserService;
+
     @Override
     public User findByEmail(String email) {
         return userDAO.findByEmail(email)
@@ -32,6 +36,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User save(User user) {
+        authenticatedUserService.evict(user.getEmail());
         return userDAO.save(user);
     }
 
@@ -50,6 +55,7 @@ public class UserServiceImpl implements UserService {
         existingUser.setAvatarUrl(user.getAvatarUrl());
         existingUser.setEmailVerified(user.getEmailVerified());
         existingUser.setUpdatedAt(user.getUpdatedAt());
+        authenticatedUserService.evict(existingUser.getEmail());
         return userDAO.save(existingUser);
     }
 
@@ -70,6 +76,7 @@ public class UserServiceImpl implements UserService {
         existingUser.setUpdatedAt(java.time.Instant.now());
         
         System.out.println("Updated avatarUrl to: " + picture);
+        authenticatedUserService.evict(existingUser.getEmail());
         User savedUser = userDAO.save(existingUser);
         System.out.println("Saved user avatarUrl: " + savedUser.getAvatarUrl());
         
@@ -9,4 +9,5 @@ public interface AuthService {
     AuthResponse signup(SignupRequest request);
     AuthResponse refreshToken(String refreshToken);
     boolean checkEmailExists(String email);
+    void logout(String token);
 }
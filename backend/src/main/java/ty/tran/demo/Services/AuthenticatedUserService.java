@@ -0,0 +1,16 @@
+package ty.tran.demo.Services;
+
+import ty.tran.demo.DTO.AuthenticatedUser;
+
+/**
+ * Principals for authenticated requests and STOMP sessions, cached briefly so that
+ * authenticating a request does not cost a users-table lookup.
+ */
+public interface AuthenticatedUserService {
+
+    // Null when no user has this email
+    AuthenticatedUser findByEmail(String email);
+
+    // Drops the cached principal once the current transaction (if any) commits
+    void evict(String email);
+}
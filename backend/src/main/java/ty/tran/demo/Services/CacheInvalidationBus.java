@@ -0,0 +1,21 @@
+package ty.tran.demo.Services;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations to the other nodes of a cluster. A service that caches database
+ * state in memory applies its own changes locally and publishes them here; every other node runs
+ * the handler the service subscribed under the same name. Without chat.cluster.enabled=true there
+ * are no other nodes and publishing does nothing.
+ */
+public interface CacheInvalidationBus {
+
+    // Sent once the surrounding transaction commits (dropped if it rolls back), or right away outside one
+    void publish(String cache, List<UUID> keys);
+
+    // invalidate gets the keys another node published; invalidateAll runs when invalidations may
+    // have been lost (the bus reconnected), so the cache must forget everything
+    void subscribe(String cache, Consumer<List<UUID>> invalidate, Runnable invalidateAll);
+}
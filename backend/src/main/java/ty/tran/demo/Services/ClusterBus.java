@@ -0,0 +1,23 @@
+package ty.tran.demo.Services;
+
+import ty.tran.demo.Event.ClusterEnvelope;
+
+import java.util.function.Consumer;
+
+/**
+ * Node-to-node transport for STOMP fan-out and cache invalidations. Each node keeps its own simple
+ * broker; frames sent on one node are published here and delivered to the listeners of every other
+ * node, at most once per node.
+ */
+public interface ClusterBus {
+
+    // Identifies this node in published envelopes; a node never receives its own envelopes
+    String nodeId();
+
+    void publish(ClusterEnvelope envelope);
+
+    void subscribe(Consumer<ClusterEnvelope> listener);
+
+    // Runs whenever delivery resumes after an outage; envelopes published in between were lost
+    void onReconnect(Runnable listener);
+}
@@ -0,0 +1,45 @@
+package ty.tran.demo.Services;
+
+import ty.tran.demo.Entity.Conversation;
+import ty.tran.demo.Entity.ConversationMember;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-process cache of "can this user use this conversation" decisions.
+ * Entries are keyed by (conversationId, userId) and must be evicted whenever
+ * membership, roles or the friendship behind a direct conversation change.
+ */
+public interface ConversationAccessService {
+
+    // Empty when the user is not a member of the conversation
+    Optional<ConversationAccess> getAccess(UUID conversationId, UUID userId);
+
+    void evictMember(UUID conversationId, UUID userId);
+
+    void evictConversation(UUID conversationId);
+
+    // Drops cached direct-conversation entries between two users after a friendship is created or removed
+    void evictFriendship(UUID user1Id, UUID user2Id);
+
+    record ConversationAccess(
+            Conversation.ConversationType type,
+            ConversationMember.MemberRole role,
+            UUID peerUserId,
+            boolean peerIsFriend) {
+
+        public boolean isDirect() {
+            return type == Conversation.ConversationType.direct;
+        }
+
+        public boolean isAdmin() {
+            return role == ConversationMember.MemberRole.owner || role == ConversationMember.MemberRole.admin;
+        }
+
+        // Direct conversations are only usable while both users are still friends
+        public boolean isAllowed() {
+            return !isDirect() || peerIsFriend;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ty.tran.demo.Services;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Write-behind buffer for what a conversation row says about its messages: the activity timestamp
+ * (conversations.updated_at) and the denormalized last-message pointer (last_message_id,
+ * last_message_at, last_sender_id, last_message_preview). Changes are coalesced in memory per
+ * conversation and written in one batched UPDATE on a short interval and on shutdown, so sends
+ * never write the conversation row themselves.
+ */
+public interface ConversationActivityService {
+
+    // Recorded once the surrounding transaction commits; the latest timestamp per conversation wins
+    void recordMessageSent(UUID conversationId, Instant at);
+
+    // An edit or delete: the pointer is recomputed on the next flush, the activity timestamp stays
+    void recordMessageChanged(UUID conversationId);
+
+    // The persisted updated_at overlaid with any newer activity that has not been flushed yet
+    Instant getLastActivity(UUID conversationId, Instant persistedUpdatedAt);
+
+    void flush();
+}
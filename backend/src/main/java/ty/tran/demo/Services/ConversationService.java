@@ -2,6 +2,7 @@ package ty.tran.demo.Services;
 
 import ty.tran.demo.DTO.ConversationDTO;
 import ty.tran.demo.DTO.CreateConversationRequest;
+import ty.tran.demo.DTO.InboxPageDTO;
 
 import java.util.List;
 import java.util.UUID;
@@ -11,6 +12,9 @@ public interface ConversationService {
     ConversationDTO createConversation(UUID creatorId, CreateConversationRequest request);
     
     List<ConversationDTO> getUserConversations(UUID userId);
+
+    // Cursor-paginated by last activity, newest first
+    InboxPageDTO getInbox(UUID userId, String cursor, int limit);
     
     ConversationDTO getConversationById(UUID conversationId, UUID userId);
     
@@ -0,0 +1,20 @@
+package ty.tran.demo.Services;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Pushes compact inbox updates (last message, activity time, unread count) to each affected
+ * member on /user/{id}/queue/inbox, so clients keep their conversation list current without
+ * refetching it. Changes are coalesced per conversation and sent as one batch per user per flush.
+ */
+public interface InboxDeltaService {
+
+    // Every member gets the conversation's new state
+    void recordConversationChanged(UUID conversationId);
+
+    // Only these members' view changed (their unread count), e.g. after their read watermark moved
+    void recordMembersChanged(UUID conversationId, Collection<UUID> userIds);
+
+    void flush();
+}
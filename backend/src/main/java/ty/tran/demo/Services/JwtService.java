@@ -1,99 +1,110 @@
 package ty.tran.demo.Services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Issues and verifies HMAC-signed compact JWTs.
+ *
+ * Every HTTP request and STOMP CONNECT verifies its token, so verified tokens are remembered
+ * (by SHA-256 of the token, never the token itself) until they expire. A repeat token then costs
+ * one hash and one cache lookup instead of a signature check and a JSON parse.
+ *
+ * Access and refresh tokens carry a "typ" claim. Only access tokens authenticate a request or a
+ * connection, and only they are cached; a refresh token is good for nothing but a refresh.
+ *
+ * A token that logged out is revoked: remembered, by an id derived from the same hash, until it
+ * would have expired, and rejected before the verified-token cache is consulted. Revocations are
+ * published to the other nodes of a cluster, which keep them for the full access-token lifetime.
+ */
 @Service
+@Slf4j
 public class JwtService {
 
-    @Value("${jwt.secret:default-secret-key}")
-    private String secretKey;
+    private static final String REVOCATION = "revoked-tokens";
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
 
-    @Value("${jwt.expiration:86400000}")
-    private long jwtExpiration;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long jwtExpiration;
+    private final long refreshExpiration;
+    private final Cache<String, VerifiedToken> verified;
+    private final Cache<UUID, Instant> revoked;
+    private final CacheInvalidationBus invalidationBus;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
 
-    @Value("${jwt.refresh-expiration:604800000}")
-    private long refreshExpiration;
+    public JwtService(
+            MeterRegistry meterRegistry,
+            CacheInvalidationBus invalidationBus,
+            @Value("${jwt.secret:default-secret-key}") String secretKey,
+            @Value("${jwt.expiration:86400000}") long jwtExpiration,
+            @Value("${jwt.refresh-expiration:604800000}") long refreshExpiration,
+            @Value("${chat.auth.token-cache.max-size:100000}") long cacheMaxSize) {
+        this.signingKey = signingKey(secretKey);
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(Expiry.creating((String hash, VerifiedToken token) ->
+                        Duration.between(Instant.now(), token.expiresAt())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "verifiedTokens");
+        this.revoked = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(Expiry.creating((UUID id, Instant expiresAt) -> Duration.between(Instant.now(), expiresAt)))
+                .build();
+        this.invalidationBus = invalidationBus;
+        // Another node only has the id, so the entry is kept as long as any access token can live
+        invalidationBus.subscribe(REVOCATION,
+                ids -> ids.forEach(id -> revoked.put(id, Instant.now().plusMillis(jwtExpiration))),
+                () -> {
+                });
+        this.hits = Counter.builder("chat.auth.token.verifications").tag("result", "hit")
+                .description("Tokens answered from the verified-token cache").register(meterRegistry);
+        this.misses = Counter.builder("chat.auth.token.verifications").tag("result", "miss")
+                .description("Tokens whose signature had to be checked").register(meterRegistry);
+        this.rejected = Counter.builder("chat.auth.token.verifications").tag("result", "rejected")
+                .description("Tokens that were malformed, forged or expired").register(meterRegistry);
+    }
 
+    /**
+     * Subject of an access token with a valid signature that has not expired, or null.
+     */
     public String extractUsername(String token) {
-        // Simple token parsing for now
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length == 3) {
-                String payload = new String(Base64.getDecoder().decode(parts[1]));
-                System.out.println("DEBUG - Token payload: " + payload); // Debug log
-                
-                // Extract email from payload (simple approach)
-                if (payload.contains("email=")) {
-                    int start = payload.indexOf("email=") + 6;
-                    int end = payload.indexOf(",", start);
-                    if (end == -1) end = payload.indexOf("}", start);
-                    if (end > start) {
-                        String email = payload.substring(start, end);
-                        System.out.println("DEBUG - Extracted email: " + email); // Debug log
-                        return email;
-                    }
-                }
-                
-                // Fallback: try to extract from "sub=" field
-                if (payload.contains("sub=")) {
-                    int start = payload.indexOf("sub=") + 4;
-                    int end = payload.indexOf(",", start);
-                    if (end == -1) end = payload.indexOf("}", start);
-                    if (end > start) {
-                        String sub = payload.substring(start, end);
-                        System.out.println("DEBUG - Extracted sub: " + sub); // Debug log
-                        return sub;
-                    }
-                }
-                
-                // Additional fallback: try to extract from "sub" field with quotes
-                if (payload.contains("\"sub\"")) {
-                    int start = payload.indexOf("\"sub\"") + 6;
-                    int end = payload.indexOf("\"", start);
-                    if (end > start) {
-                        String sub = payload.substring(start, end);
-                        System.out.println("DEBUG - Extracted sub with quotes: " + sub); // Debug log
-                        return sub;
-                    }
-                }
-                
-                // Additional fallback: try to extract from "email" field with quotes
-                if (payload.contains("\"email\"")) {
-                    int start = payload.indexOf("\"email\"") + 8;
-                    int end = payload.indexOf("\"", start);
-                    if (end > start) {
-                        String email = payload.substring(start, end);
-                        System.out.println("DEBUG - Extracted email with quotes: " + email); // Debug log
-                        return email;
-                    }
-                }
-            } else {
-                System.out.println("DEBUG - Token has " + parts.length + " parts, expected 3"); // Debug log
-            }
-        } catch (Exception e) {
-            System.out.println("DEBUG - Error extracting username: " + e.getMessage()); // Debug log
-            // Ignore parsing errors
-        }
-        return null;
-    }
-    
-    // Test method to debug token format
-    public void debugToken(String token) {
-        System.out.println("DEBUG - Full token: " + token);
-        try {
-            String[] parts = token.split("\\.");
-            System.out.println("DEBUG - Token parts count: " + parts.length);
-            for (int i = 0; i < parts.length; i++) {
-                System.out.println("DEBUG - Part " + i + ": " + parts[i]);
-            }
-        } catch (Exception e) {
-            System.out.println("DEBUG - Error parsing token: " + e.getMessage());
-        }
+        VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null ? verifiedToken.username() : null;
     }
 
     public String generateToken(String username) {
@@ -101,76 +112,143 @@ public class JwtService {
     }
 
     public String generateToken(Map<String, Object> extraClaims, String username) {
-        return buildToken(extraClaims, username, jwtExpiration);
+        return buildToken(extraClaims, username, jwtExpiration, ACCESS);
     }
 
     public String generateRefreshToken(String username) {
         // Add unique identifier to prevent duplicate tokens
         Map<String, Object> extraClaims = new HashMap<>();
-        extraClaims.put("jti", java.util.UUID.randomUUID().toString()); // Unique token ID
-        extraClaims.put("nano", System.nanoTime()); // Nano time for additional uniqueness
-        return buildToken(extraClaims, username, refreshExpiration);
+        extraClaims.put("jti", UUID.randomUUID().toString());
+        return buildToken(extraClaims, username, refreshExpiration, REFRESH);
     }
 
-    private String buildToken(Map<String, Object> claims, String username, long expiration) {
-        // Simple token generation for now
+    /**
+     * Subject of a refresh token with a valid signature that has not expired, or null. Never
+     * cached: refreshes are rare, and a cached refresh token must not be mistaken for an access token.
+     */
+    public String extractRefreshUsername(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        Claims claims = parse(token);
+        if (claims == null || !hasType(claims, REFRESH)) {
+            return null;
+        }
+        return claims.getSubject() != null ? claims.getSubject() : claims.get("email", String.class);
+    }
+
+    private String buildToken(Map<String, Object> claims, String username, long expiration, String type) {
         long now = System.currentTimeMillis();
-        long expiry = now + expiration;
-        
-        // Create a simple JWT-like structure
-        String header = Base64.getEncoder().encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes());
-        
-        Map<String, Object> payload = new HashMap<>(claims);
-        payload.put("sub", username);
-        payload.put("iat", now);
-        payload.put("exp", expiry);
-        payload.put("email", username);
-        
-        String payloadStr = payload.toString().replace(" ", "");
-        String payloadEncoded = Base64.getEncoder().encodeToString(payloadStr.getBytes());
-        
-        // Simple signature (not cryptographically secure for now)
-        String signature = Base64.getEncoder().encodeToString(
-            (header + "." + payloadEncoded + secretKey).getBytes()
-        );
-        
-        return header + "." + payloadEncoded + "." + signature;
+        return Jwts.builder()
+                .claims(claims)
+                .subject(username)
+                .claim("email", username)
+                .claim(TYPE_CLAIM, type)
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signingKey)
+                .compact();
+    }
+
+    /**
+     * Rejects the token from now on, on every node, until it expires. Does nothing for a token
+     * that is not valid anyway.
+     */
+    public void revoke(String token) {
+        VerifiedToken verifiedToken = verify(token);
+        if (verifiedToken == null) {
+            return;
+        }
+        byte[] digest = sha256(token.getBytes(StandardCharsets.US_ASCII));
+        UUID id = revocationId(digest);
+        revoked.put(id, verifiedToken.expiresAt());
+        verified.invalidate(Base64.getEncoder().encodeToString(digest));
+        invalidationBus.publish(REVOCATION, List.of(id));
     }
 
     public boolean isTokenValid(String token, String username) {
+        VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null && verifiedToken.username().equals(username);
+    }
+
+    private VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        byte[] digest = sha256(token.getBytes(StandardCharsets.US_ASCII));
+        if (revoked.getIfPresent(revocationId(digest)) != null) {
+            rejected.increment();
+            return null;
+        }
+        String hash = Base64.getEncoder().encodeToString(digest);
+        VerifiedToken cached = verified.getIfPresent(hash);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        Claims claims = parse(token);
+        if (claims == null) {
+            return null;
+        }
+        if (!hasType(claims, ACCESS)) {
+            rejected.increment();
+            return null;
+        }
+        String username = claims.getSubject() != null ? claims.getSubject() : claims.get("email", String.class);
+        if (username == null || claims.getExpiration() == null) {
+            rejected.increment();
+            return null;
+        }
+        VerifiedToken verifiedToken = new VerifiedToken(username, claims.getExpiration().toInstant());
+        verified.put(hash, verifiedToken);
+        return verifiedToken;
+    }
+
+    private Claims parse(String token) {
         try {
-            String extractedUsername = extractUsername(token);
-            boolean usernameMatch = username.equals(extractedUsername);
-            boolean notExpired = !isTokenExpired(token);
-            System.out.println("DEBUG - Token validation: username=" + username + ", extracted=" + extractedUsername + ", match=" + usernameMatch + ", notExpired=" + notExpired);
-            return usernameMatch && notExpired;
-        } catch (Exception e) {
-            System.out.println("DEBUG - Token validation error: " + e.getMessage());
-            return false;
+            return parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.increment();
+            log.debug("Rejected JWT: {}", e.getMessage());
+            return null;
         }
     }
 
-    private boolean isTokenExpired(String token) {
+    // Tokens issued before the claim existed are told apart by the jti only refresh tokens carried
+    private static boolean hasType(Claims claims, String type) {
+        String claimed = claims.get(TYPE_CLAIM, String.class);
+        if (claimed != null) {
+            return claimed.equals(type);
+        }
+        return (claims.getId() != null) == REFRESH.equals(type);
+    }
+
+    // Secrets shorter than HMAC-SHA256 needs are stretched rather than refused, so existing deployments start
+    private static SecretKey signingKey(String secret) {
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            log.warn("jwt.secret is shorter than 256 bits; set a longer secret");
+            bytes = sha256(bytes);
+        }
+        return Keys.hmacShaKeyFor(bytes);
+    }
+
+    // The first 128 bits of the token's SHA-256, in the form the cluster's invalidation bus carries
+    private static UUID revocationId(byte[] digest) {
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static byte[] sha256(byte[] bytes) {
         try {
-            String[] parts = token.split("\\.");
-            if (parts.length == 3) {
-                String payload = new String(Base64.getDecoder().decode(parts[1]));
-                System.out.println("DEBUG - Checking expiration for payload: " + payload);
-                if (payload.contains("exp=")) {
-                    int start = payload.indexOf("exp=") + 4;
-                    int end = payload.indexOf(",", start);
-                    if (end == -1) end = payload.indexOf("}", start);
-                    String expiryStr = payload.substring(start, end);
-                    long expiry = Long.parseLong(expiryStr);
-                    long currentTime = System.currentTimeMillis();
-                    boolean expired = currentTime > expiry;
-                    System.out.println("DEBUG - Token expiry check: current=" + currentTime + ", expiry=" + expiry + ", expired=" + expired);
-                    return expired;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("DEBUG - Error checking token expiration: " + e.getMessage());
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return true; // Consider expired if can't parse
+    }
+
+    private record VerifiedToken(String username, Instant expiresAt) {
     }
 }
@@ -0,0 +1,12 @@
+package ty.tran.demo.Services;
+
+/**
+ * Fills the denormalized last-message pointer on conversations (last_message_id, last_message_at,
+ * last_sender_id, last_message_preview) for rows written before it existed. Sends, edits and deletes
+ * keep it current through ConversationActivityService.
+ */
+public interface LastMessageService {
+
+    // Fills the pointer for conversations written before it existed, one chunk per call
+    void backfill();
+}
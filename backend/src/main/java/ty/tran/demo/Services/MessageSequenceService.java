@@ -0,0 +1,15 @@
+package ty.tran.demo.Services;
+
+import java.util.UUID;
+
+/**
+ * Hands out per-conversation message sequence numbers. Numbers are unique and, from any one
+ * server, increasing; they may skip (a block left unused, a send that rolled back) and, with
+ * several servers writing to one conversation, numbers from their blocks interleave. Clients
+ * treat a skipped number as a gap to fetch and merge what they fetch by id, so both are harmless.
+ */
+public interface MessageSequenceService {
+
+    // Call before the message is inserted; claiming a new block commits on its own, outside the caller's transaction
+    long next(UUID conversationId);
+}
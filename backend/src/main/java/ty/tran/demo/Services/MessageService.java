@@ -3,11 +3,15 @@ package ty.tran.demo.Services;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import ty.tran.demo.DTO.MessageDTO;
+import ty.tran.demo.DTO.MessageSearchResultDTO;
+import ty.tran.demo.DTO.MessageSliceDTO;
+import ty.tran.demo.DTO.ReadStateDTO;
 import ty.tran.demo.DTO.SendMessageRequest;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface MessageService {
     
@@ -16,6 +20,12 @@ public interface MessageService {
     Page<MessageDTO> getMessages(UUID conversationId, UUID userId, Pageable pageable);
     
     List<MessageDTO> getMessagesAfter(UUID conversationId, UUID userId, Instant after);
+
+    // Messages with seq > afterSeq in sequence order, deleted ones included so clients can close every gap
+    List<MessageDTO> getMessagesAfterSeq(UUID conversationId, UUID userId, long afterSeq, int limit);
+
+    // Cursor-based history: at most one of before/after is used; with neither, returns the latest messages
+    MessageSliceDTO getMessageHistory(UUID conversationId, UUID userId, String before, String after, int limit);
     
     MessageDTO getMessageById(UUID messageId, UUID userId);
     
@@ -28,6 +38,14 @@ public interface MessageService {
     void markConversationAsRead(UUID conversationId, UUID userId);
     
     long getUnreadCount(UUID conversationId, UUID userId);
+
+    List<ReadStateDTO> getReadState(UUID conversationId, UUID userId);
+
+    // Members (other than the sender) whose read watermark has reached the message
+    List<UUID> getSeenBy(UUID messageId, UUID userId);
     
-    List<MessageDTO> searchMessages(UUID conversationId, UUID userId, String searchTerm);
+    List<MessageSearchResultDTO> searchMessages(UUID conversationId, UUID userId, String searchTerm, Pageable pageable);
+
+    // Pushes every match to the sink in rank order, one bounded page in memory at a time
+    void streamSearchMessages(UUID conversationId, UUID userId, String searchTerm, Consumer<MessageSearchResultDTO> sink);
 }
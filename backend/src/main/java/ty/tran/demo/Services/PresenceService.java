@@ -0,0 +1,24 @@
+package ty.tran.demo.Services;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Who is connected, kept in memory. Sessions are counted per user, so a second tab neither
+ * announces nor withdraws presence, and the offline transition waits out a grace period so
+ * a quick reconnect is invisible to others. Transitions are fanned out to the user's
+ * conversations from a cached membership index; last_seen_at is written behind in batches.
+ */
+public interface PresenceService {
+
+    void sessionConnected(UUID userId, String sessionId);
+
+    void sessionDisconnected(UUID userId, String sessionId);
+
+    boolean isOnline(UUID userId);
+
+    // Conversations the user belongs to, from the in-memory index
+    Set<UUID> getConversationIds(UUID userId);
+
+    void flush();
+}
@@ -0,0 +1,25 @@
+package ty.tran.demo.Services;
+
+import ty.tran.demo.DTO.ReadStateDTO;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read state kept as one high-water mark per conversation member.
+ * Marks are coalesced in memory per (conversation, user), written in batches, and announced
+ * as one aggregated receipt frame per conversation per flush.
+ */
+public interface ReadReceiptService {
+
+    // Only ever moves the watermark forward; older marks are ignored
+    void markRead(UUID conversationId, UUID userId, UUID messageId, Instant messageCreatedAt);
+
+    // Watermarks of all members, including marks that have not been flushed yet
+    List<ReadStateDTO> getReadState(UUID conversationId);
+
+    Instant getLastReadMessageAt(UUID conversationId, UUID userId, Instant persistedLastReadMessageAt);
+
+    void flush();
+}
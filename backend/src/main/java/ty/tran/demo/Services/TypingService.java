@@ -0,0 +1,18 @@
+package ty.tran.demo.Services;
+
+import java.util.UUID;
+
+/**
+ * Ephemeral typing state, held only in memory. Repeated "typing" frames from the same user just
+ * extend an expiry; only a change of who is typing (a start, a stop, or a client that went silent)
+ * is broadcast, aggregated into one frame per conversation per interval.
+ */
+public interface TypingService {
+
+    void update(UUID conversationId, UUID userId, boolean typing);
+
+    // Drops the user from every conversation, e.g. when their session closes
+    void clearUser(UUID userId);
+
+    void flush();
+}
@@ -0,0 +1,34 @@
+package ty.tran.demo.Services;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Unread badges kept as a counter per conversation member (conversation_members.unread_count).
+ * Counters catch up with committed sends in periodic batches, are recomputed when the read
+ * watermark moves, cached per conversation, and periodically reconciled against the messages table.
+ */
+public interface UnreadCounterService {
+
+    int getUnreadCount(UUID conversationId, UUID userId);
+
+    // Called inside the send transaction; nothing is written until it commits
+    void recordMessageSent(UUID conversationId, UUID senderId);
+
+    // Called inside the delete transaction before the message row is written (counters are locked ahead of messages)
+    void recordMessageDeleted(UUID conversationId, UUID senderId, UUID messageId, Instant messageCreatedAt);
+
+    // Locks the member rows of the given conversations for the rest of the caller's transaction;
+    // every writer of unread_count takes these before it touches messages
+    void lockCounters(Collection<UUID> conversationIds);
+
+    // The conversation's counters were recounted by someone else's statement (e.g. the read flush)
+    void recordRecounted(UUID conversationId);
+
+    void evictConversation(UUID conversationId);
+
+    void flush();
+
+    void reconcile();
+}
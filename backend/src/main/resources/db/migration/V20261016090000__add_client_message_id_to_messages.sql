@@ -0,0 +1,2 @@
+-- Migration file created at 20261016090000
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS client_message_id VARCHAR(64);
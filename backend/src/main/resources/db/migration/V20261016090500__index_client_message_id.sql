@@ -0,0 +1,5 @@
+-- Migration file created at 20261016090500
+-- Kept apart from the column change: CREATE INDEX CONCURRENTLY cannot run inside a transaction block.
+-- Built concurrently so the messages table stays writable while the index is created
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uq_msg_sender_client_id
+    ON messages (sender_id, client_message_id);
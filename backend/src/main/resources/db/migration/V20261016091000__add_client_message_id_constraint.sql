@@ -0,0 +1,3 @@
+-- Migration file created at 20261016091000
+ALTER TABLE messages
+    ADD CONSTRAINT uq_msg_sender_client_id UNIQUE USING INDEX uq_msg_sender_client_id;
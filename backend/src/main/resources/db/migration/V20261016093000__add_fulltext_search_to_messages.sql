@@ -0,0 +1,4 @@
+-- Migration file created at 20261016093000
+-- 'simple' config: no stemming or stop words, so mixed-language (Vietnamese/English) chats match literally
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(content, ''))) STORED;
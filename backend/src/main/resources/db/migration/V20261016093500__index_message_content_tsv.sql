@@ -0,0 +1,3 @@
+-- Migration file created at 20261016093500
+-- Kept apart from the column change: CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_msg_content_tsv ON messages USING gin (content_tsv);
@@ -0,0 +1,9 @@
+-- Migration file created at 20261016100000
+-- created_at of last_read_message_id, so watermarks can be compared without joining messages
+ALTER TABLE conversation_members ADD COLUMN IF NOT EXISTS last_read_message_at TIMESTAMPTZ;
+
+UPDATE conversation_members cm
+SET last_read_message_at = m.created_at
+FROM messages m
+WHERE m.id = cm.last_read_message_id
+  AND cm.last_read_message_at IS NULL;
@@ -0,0 +1,13 @@
+-- Migration file created at 20261016103000
+ALTER TABLE conversation_members ADD COLUMN IF NOT EXISTS unread_count INTEGER NOT NULL DEFAULT 0;
+
+-- Same definition as the reconciliation job: other members' live messages since the read watermark (or joining)
+UPDATE conversation_members cm
+SET unread_count = (
+    SELECT count(*)
+    FROM messages m
+    WHERE m.conversation_id = cm.conversation_id
+      AND m.deleted_at IS NULL
+      AND m.sender_id IS DISTINCT FROM cm.user_id
+      AND m.created_at > greatest(coalesce(cm.last_read_message_at, '-infinity'::timestamptz), cm.joined_at)
+);
@@ -0,0 +1,7 @@
+-- Migration file created at 20261016110000
+-- Nullable columns without a default are a catalog-only change, so this does not rewrite or block the table.
+-- Existing rows are filled in by the chunked backfill in LastMessageServiceImpl.
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_message_id UUID;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_message_at TIMESTAMPTZ;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_sender_id UUID;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_message_preview VARCHAR(255);
@@ -0,0 +1,9 @@
+-- Migration file created at 20261016120000
+-- Bodies of cluster bus events too large for a NOTIFY payload; the notification carries the id.
+CREATE TABLE IF NOT EXISTS cluster_bus_payloads (
+    id UUID PRIMARY KEY,
+    body TEXT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_cluster_bus_payloads_created ON cluster_bus_payloads (created_at);
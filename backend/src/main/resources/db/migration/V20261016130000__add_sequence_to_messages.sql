@@ -0,0 +1,25 @@
+-- Migration file created at 20261016130000
+-- seq numbers messages within their conversation; seq_reserved is the highest number handed out.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS seq_reserved BIGINT NOT NULL DEFAULT 0;
+
+-- Existing history is numbered here, in created_at order, before any server hands out a number:
+-- numbering it later would give old messages higher numbers than the ones sent after the deploy.
+-- Servers on the previous version insert without seq, so stop them before this migration runs.
+UPDATE messages m
+SET seq = numbered.seq
+FROM (
+    SELECT id, row_number() OVER (PARTITION BY conversation_id ORDER BY created_at, id) AS seq
+    FROM messages
+    WHERE seq IS NULL
+) numbered
+WHERE m.id = numbered.id;
+
+UPDATE conversations c
+SET seq_reserved = numbered.max_seq
+FROM (
+    SELECT conversation_id, max(seq) AS max_seq
+    FROM messages
+    GROUP BY conversation_id
+) numbered
+WHERE c.id = numbered.conversation_id;
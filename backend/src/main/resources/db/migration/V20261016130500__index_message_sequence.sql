@@ -0,0 +1,3 @@
+-- Migration file created at 20261016130500
+-- Kept apart from the column changes: CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_msg_conv_seq ON messages (conversation_id, seq);
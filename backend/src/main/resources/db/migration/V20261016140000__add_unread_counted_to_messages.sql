@@ -0,0 +1,5 @@
+-- Migration file created at 20261016140000
+-- Whether a message is already included in its conversation's unread counters.
+-- Existing counters were bumped for every message sent so far; new rows start uncounted.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS unread_counted BOOLEAN NOT NULL DEFAULT true;
+ALTER TABLE messages ALTER COLUMN unread_counted SET DEFAULT false;
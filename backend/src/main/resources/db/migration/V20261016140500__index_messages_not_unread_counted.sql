@@ -0,0 +1,3 @@
+-- Migration file created at 20261016140500
+-- Kept apart from the column change: CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_msg_not_unread_counted ON messages (conversation_id) WHERE NOT unread_counted;
@@ -0,0 +1,248 @@
+package ty.tran.demo.Implements;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionTemplate;
+import ty.tran.demo.DAO.*;
+import ty.tran.demo.Entity.Conversation;
+import ty.tran.demo.Entity.ConversationMember;
+import ty.tran.demo.Entity.Message;
+import ty.tran.demo.Entity.MessageAttachment;
+import ty.tran.demo.Entity.User;
+import ty.tran.demo.Services.ConversationAccessService;
+import ty.tran.demo.Services.ConversationAccessService.ConversationAccess;
+import ty.tran.demo.Services.ConversationActivityService;
+import ty.tran.demo.Services.MessageSequenceService;
+import ty.tran.demo.Services.ReadReceiptService;
+import ty.tran.demo.Services.UnreadCounterService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Guards against per-row lookups creeping back into message reads: every DAO call is counted,
+ * and a 50-message page must cost exactly as many calls as a single message.
+ *
+ * Senders and quoted messages are uninitialized Hibernate proxies, as they come out of a page
+ * query, so the hydrator has to batch-load them rather than find them already in memory.
+ */
+class MessageServiceQueryCountTests {
+
+	private final UUID conversationId = UUID.randomUUID();
+	private final UUID userId = UUID.randomUUID();
+
+	private MessageDAO messageDAO;
+	private MessageAttachmentDAO messageAttachmentDAO;
+	private UserDAO userDAO;
+	private MessageServiceImpl messageService;
+	private final Map<UUID, Message> storedMessages = new HashMap<>();
+	private final Map<UUID, User> storedUsers = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		messageDAO = mock(MessageDAO.class);
+		messageAttachmentDAO = mock(MessageAttachmentDAO.class);
+		userDAO = mock(UserDAO.class);
+		ConversationAccessService accessService = mock(ConversationAccessService.class);
+		when(accessService.getAccess(conversationId, userId)).thenReturn(Optional.of(new ConversationAccess(
+				Conversation.ConversationType.group, ConversationMember.MemberRole.member, null, false)));
+
+		messageService = new MessageServiceImpl(
+				messageDAO,
+				mock(ConversationDAO.class),
+				mock(ConversationMemberDAO.class),
+				messageAttachmentDAO,
+				userDAO,
+				accessService,
+				new MessageHydrator(messageDAO, userDAO, messageAttachmentDAO),
+				mock(RecentMessageCache.class),
+				mock(ReadReceiptService.class),
+				mock(UnreadCounterService.class),
+				mock(ConversationActivityService.class),
+				mock(MessageSequenceService.class),
+				mock(ApplicationEventPublisher.class),
+				mock(MessageIdempotencyRegistry.class),
+				mock(TransactionTemplate.class));
+	}
+
+	@Test
+	void getMessagesUsesConstantQueries() {
+		assertConstantQueries(messages -> {
+			when(messageDAO.findActiveMessagesByConversationId(eq(conversationId), any(Pageable.class)))
+					.thenReturn(new PageImpl<>(messages));
+			return () -> messageService.getMessages(conversationId, userId, PageRequest.of(0, 50)).getContent();
+		});
+	}
+
+	@Test
+	void getMessagesAfterUsesConstantQueries() {
+		assertConstantQueries(messages -> {
+			when(messageDAO.findMessagesAfter(eq(conversationId), any(Instant.class))).thenReturn(messages);
+			return () -> messageService.getMessagesAfter(conversationId, userId, Instant.EPOCH);
+		});
+	}
+
+	@Test
+	void searchMessagesUsesConstantQueries() {
+		assertConstantQueries(messages -> {
+			List<MessageSearchHit> hits = messages.stream()
+					.<MessageSearchHit>map(m -> new Hit(m.getId(), 0.5, "<mark>hello</mark>"))
+					.toList();
+			when(messageDAO.searchInConversation(eq(conversationId), eq("hello"), any(Pageable.class))).thenReturn(hits);
+			return () -> messageService.searchMessages(conversationId, userId, "hello", PageRequest.of(0, 50));
+		});
+	}
+
+	private void assertConstantQueries(Function<List<Message>, Supplier<List<?>>> scenario) {
+		int single = countQueries(scenario, 1);
+		int page = countQueries(scenario, 50);
+		assertThat(page).isEqualTo(single);
+	}
+
+	private int countQueries(Function<List<Message>, Supplier<List<?>>> scenario, int size) {
+		Mockito.clearInvocations(messageDAO, messageAttachmentDAO, userDAO);
+		List<Message> messages = buildMessages(size);
+		Supplier<List<?>> call = scenario.apply(messages);
+		when(messageAttachmentDAO.findByMessageIdIn(anyCollection())).thenReturn(attachmentsFor(messages));
+		when(messageDAO.findAllById(anyIterable())).thenAnswer(invocation -> lookup(invocation.getArgument(0), storedMessages));
+		when(userDAO.findAllById(anyIterable())).thenAnswer(invocation -> lookup(invocation.getArgument(0), storedUsers));
+		Mockito.clearInvocations(messageDAO, messageAttachmentDAO, userDAO);
+
+		assertThat(call.get()).hasSize(size);
+		// The proxies were resolved by one batch each, not initialized row by row
+		UUID quotedId = messages.get(0).getReplyTo().getId();
+		verify(messageDAO).findAllById(argThat(ids -> contains(ids, quotedId)));
+		verify(userDAO).findAllById(anyIterable());
+
+		return Mockito.mockingDetails(messageDAO).getInvocations().size()
+				+ Mockito.mockingDetails(messageAttachmentDAO).getInvocations().size()
+				+ Mockito.mockingDetails(userDAO).getInvocations().size();
+	}
+
+	private List<Message> buildMessages(int size) {
+		storedMessages.clear();
+		storedUsers.clear();
+		Conversation conversation = Conversation.builder().id(conversationId).build();
+		Message quoted = Message.builder()
+				.id(UUID.randomUUID())
+				.conversation(conversation)
+				.sender(userProxy(storeUser("quoted")))
+				.content("hello there")
+				.createdAt(Instant.EPOCH)
+				.build();
+		storedMessages.put(quoted.getId(), quoted);
+		List<Message> messages = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			Message message = Message.builder()
+					.id(UUID.randomUUID())
+					.conversation(conversation)
+					.sender(userProxy(storeUser("user" + i)))
+					.content("hello " + i)
+					.replyTo(messageProxy(quoted.getId()))
+					.createdAt(Instant.EPOCH.plusSeconds(i + 1))
+					.build();
+			storedMessages.put(message.getId(), message);
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	private UUID storeUser(String username) {
+		User user = User.builder().id(UUID.randomUUID()).username(username).build();
+		storedUsers.put(user.getId(), user);
+		return user.getId();
+	}
+
+	private static User userProxy(UUID id) {
+		User proxy = uninitialized(User.class, id);
+		when(proxy.getId()).thenReturn(id);
+		return proxy;
+	}
+
+	private static Message messageProxy(UUID id) {
+		Message proxy = uninitialized(Message.class, id);
+		when(proxy.getId()).thenReturn(id);
+		return proxy;
+	}
+
+	// What Hibernate hands out for a lazy association that was not fetched: only the id is known
+	private static <T> T uninitialized(Class<T> type, UUID id) {
+		T proxy = mock(type, withSettings().extraInterfaces(HibernateProxy.class));
+		LazyInitializer initializer = mock(LazyInitializer.class);
+		when(initializer.isUninitialized()).thenReturn(true);
+		when(initializer.getIdentifier()).thenReturn(id);
+		HibernateProxy hibernateProxy = (HibernateProxy) proxy;
+		when(hibernateProxy.asHibernateProxy()).thenReturn(hibernateProxy);
+		when(hibernateProxy.getHibernateLazyInitializer()).thenReturn(initializer);
+		return proxy;
+	}
+
+	private static <T> List<T> lookup(Iterable<UUID> ids, Map<UUID, T> stored) {
+		List<T> found = new ArrayList<>();
+		for (UUID id : ids) {
+			T entity = stored.get(id);
+			if (entity != null) {
+				found.add(entity);
+			}
+		}
+		return found;
+	}
+
+	private static boolean contains(Iterable<UUID> ids, UUID id) {
+		for (UUID candidate : ids) {
+			if (candidate.equals(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private record Hit(UUID id, Double rank, String snippet) implements MessageSearchHit {
+
+		@Override
+		public UUID getId() {
+			return id;
+		}
+
+		@Override
+		public Double getRank() {
+			return rank;
+		}
+
+		@Override
+		public String getSnippet() {
+			return snippet;
+		}
+	}
+
+	private List<MessageAttachment> attachmentsFor(List<Message> messages) {
+		return messages.stream()
+				.map(m -> MessageAttachment.builder().id(UUID.randomUUID()).message(m).url("https://example.test/a.png").build())
+				.toList();
+	}
+}
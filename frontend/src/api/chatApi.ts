@@ -4,7 +4,9 @@ import {
   Conversation, 
   SendMessageRequest, 
   CreateConversationRequest,
-  MessageAttachment 
+  MessageAttachment,
+  MessageSearchResult,
+  InboxPage
 } from '../types/chat';
 
 const API_BASE_URL = 'http://localhost:8080/api';
@@ -103,6 +105,21 @@ class ChatApi {
     }
   }
 
+  // Messages with a sequence number above seq, oldest first; used to fill gaps in the live stream
+  async getMessagesAfterSeq(conversationId: string, seq: number, limit: number = 100): Promise<Message[]> {
+    try {
+      const response = await this.api.get(`/messages/conversation/${conversationId}/after-seq`, {
+        params: { seq, limit }
+      });
+      return response.data;
+    } catch (error: any) {
+      if (axios.isAxiosError(error)) {
+        throw new Error(error.response?.data?.message || 'Failed to get messages');
+      }
+      throw error;
+    }
+  }
+
   async getMessagesAfter(conversationId: string, after: string): Promise<Message[]> {
     try {
       const response = await this.api.get(`/messages/conversation/${conversationId}/after`, {
@@ -186,10 +203,10 @@ class ChatApi {
     }
   }
 
-  async searchMessages(conversationId: string, query: string): Promise<Message[]> {
+  async searchMessages(conversationId: string, query: string, page = 0, size = 20): Promise<MessageSearchResult[]> {
     try {
       const response = await this.api.get(`/messages/conversation/${conversationId}/search`, {
-        params: { q: query }
+        params: { q: query, page, size }
       });
       return response.data;
     } catch (error: any) {
@@ -225,6 +242,20 @@ class ChatApi {
     }
   }
 
+  async getInbox(cursor?: string, limit: number = 30): Promise<InboxPage> {
+    try {
+      const response: AxiosResponse<InboxPage> = await this.api.get('/conversations/inbox', {
+        params: { cursor, limit }
+      });
+      return response.data;
+    } catch (error: any) {
+      if (axios.isAxiosError(error)) {
+        throw new Error(error.response?.data?.message || 'Failed to get inbox');
+      }
+      throw error;
+    }
+  }
+
   async getConversation(conversationId: string): Promise<Conversation> {
     try {
       const response: AxiosResponse<Conversation> = await this.api.get(`/conversations/${conversationId}`);
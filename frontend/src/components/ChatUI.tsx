@@ -89,12 +89,15 @@ const ChatUI: React.FC = () => {
   const [showPermissionModal, setShowPermissionModal] = useState<boolean>(false);
   const [permissionType, setPermissionType] = useState<'camera' | 'microphone' | 'both'>('both');
   const typingTimeoutRef = useRef<NodeJS.Timeout | null>(null);
+  const typingSentAtRef = useRef<number>(0);
   const likeTimeoutRef = useRef<NodeJS.Timeout | null>(null);
 
   const handleTyping = () => {
-    if (!isTyping && currentConversation) {
+    // Re-sent every few seconds while typing, the server expires typing state that is not refreshed
+    if (currentConversation && (!isTyping || Date.now() - typingSentAtRef.current > 3000)) {
       setIsTyping(true);
       sendTypingIndicator(true);
+      typingSentAtRef.current = Date.now();
     }
 
     if (typingTimeoutRef.current) {
@@ -3,7 +3,7 @@ import { useAuth } from '../contexts/AuthContext';
 import chatApi from '../api/chatApi';
 import websocketService from '../services/websocketService';
 import webrtcService from '../services/webrtcService';
-import { Message, Conversation, TypingIndicator, ReadReceipt, MessageType } from '../types/chat';
+import { Message, Conversation, TypingState, ReadReceipt, MessageType } from '../types/chat';
 
 export const useChat = () => {
   const { user, token } = useAuth();
@@ -17,6 +17,8 @@ export const useChat = () => {
   const messagesEndRef = useRef<HTMLDivElement>(null);
 
   const messagesCache = useRef<Map<string, Message[]>>(new Map());
+  // Highest message seq seen per conversation, to spot frames missed on the live stream
+  const lastSeqRef = useRef<Map<string, number>>(new Map());
 
   const [justSelectedConversation, setJustSelectedConversation] = useState<boolean>(false);
 
@@ -56,6 +58,29 @@ export const useChat = () => {
               }
             });
           });
+
+          // Keep the inbox current from server-side deltas instead of refetching the list
+          websocketService.subscribeToInbox((delta) => {
+            setConversations(prev => prev
+              .map(conv => {
+                if (conv.id !== delta.conversationId) {
+                  return conv;
+                }
+                const lastMessage = delta.lastMessageId
+                  ? {
+                      ...(conv.lastMessage as Message),
+                      id: delta.lastMessageId,
+                      conversationId: delta.conversationId,
+                      senderId: delta.lastSenderId || '',
+                      senderDisplayName: delta.lastSenderDisplayName || '',
+                      content: delta.lastMessagePreview || '',
+                      createdAt: delta.lastMessageAt || delta.activityAt
+                    }
+                  : undefined;
+                return { ...conv, lastMessage, updatedAt: delta.activityAt, unreadCount: delta.unreadCount };
+              })
+              .sort((a, b) => new Date(b.updatedAt || 0).getTime() - new Date(a.updatedAt || 0).getTime()));
+          });
         })
         .catch((error) => {
           console.error('WebSocket connection failed:', error);
@@ -98,6 +123,8 @@ export const useChat = () => {
       if (page === 0) {
         setMessages(newMessages);
         messagesCache.current.set(conversationId, newMessages);
+        const seqs = newMessages.map((msg: Message) => msg.seq ?? 0);
+        lastSeqRef.current.set(conversationId, seqs.length > 0 ? Math.max(...seqs) : 0);
         setTimeout(() => scrollToBottom(), 100);
       } else {
         setMessages(prev => [...newMessages, ...prev]);
@@ -112,6 +139,17 @@ export const useChat = () => {
     }
   }, [scrollToBottom]);
 
+  // The server closed a slow connection and dropped frames; reload what may have been missed
+  useEffect(() => {
+    return websocketService.onResync(() => {
+      messagesCache.current.clear();
+      loadConversations();
+      if (currentConversation) {
+        loadMessages(currentConversation.id);
+      }
+    });
+  }, [loadConversations, loadMessages, currentConversation]);
+
   const sendMessage = useCallback(async (content: string, type: MessageType = MessageType.TEXT, replyToId: string | null = null) => {
     if (!currentConversation || !content.trim() || !user) return;
 
@@ -179,7 +217,8 @@ export const useChat = () => {
         conversationId: currentConversation.id,
         type,
         content: trimmedContent,
-        replyToId: replyToId || undefined
+        replyToId: replyToId || undefined,
+        clientMessageId: tempId
       };
 
       if (isConnected) {
@@ -312,7 +351,39 @@ export const useChat = () => {
 
     console.log('Setting up WebSocket subscriptions for conversation:', currentConversation.id);
 
+    // Sends that commit close together can arrive out of order, so wait briefly before fetching a gap
+    const fillGap = (conversationId: string, afterSeq: number) => {
+      setTimeout(async () => {
+        try {
+          const missing = await chatApi.getMessagesAfterSeq(conversationId, afterSeq);
+          setMessages(prev => {
+            const known = new Set(prev.map(msg => msg.id));
+            const added = missing.filter(msg => !known.has(msg.id) && !msg.deletedAt);
+            if (added.length === 0) {
+              return prev;
+            }
+            const merged = [...prev, ...added].sort((a, b) =>
+              new Date(a.createdAt).getTime() - new Date(b.createdAt).getTime());
+            messagesCache.current.set(conversationId, merged);
+            return merged;
+          });
+        } catch (error) {
+          console.error('Failed to fill message gap:', error);
+        }
+      }, 1000);
+    };
+
     const handleNewMessage = (message: Message) => {
+      if (message.seq !== undefined && message.seq !== null) {
+        const lastSeq = lastSeqRef.current.get(message.conversationId);
+        if (lastSeq !== undefined && message.seq > lastSeq + 1) {
+          fillGap(message.conversationId, lastSeq);
+        }
+        if (lastSeq === undefined || message.seq > lastSeq) {
+          lastSeqRef.current.set(message.conversationId, message.seq);
+        }
+      }
+
       setMessages(prev => {
         const exists = prev.some(msg => msg.id === message.id);
         if (exists) {
@@ -374,18 +445,9 @@ export const useChat = () => {
       setTimeout(() => scrollToBottom(), 100);
     };
 
-    const handleTypingIndicator = (indicator: TypingIndicator) => {
-      if (indicator.userId !== user?.id) {
-        if (indicator.isTyping) {
-          setTypingUsers(prev => new Set([...Array.from(prev), indicator.userId]));
-        } else {
-          setTypingUsers(prev => {
-            const newSet = new Set(prev);
-            newSet.delete(indicator.userId);
-            return newSet;
-          });
-        }
-      }
+    // The server sends the full set of typers whenever it changes
+    const handleTypingIndicator = (state: TypingState) => {
+      setTypingUsers(new Set(state.userIds.filter(userId => userId !== user?.id)));
     };
 
     const handleReadReceipt = (receipt: ReadReceipt) => {
@@ -1,6 +1,6 @@
 import SockJS from 'sockjs-client';
-import { Client } from '@stomp/stompjs';
-import { Message, TypingIndicator, ReadReceipt, PresenceUpdate, SendMessageRequest } from '../types/chat';
+import { Client, IMessage } from '@stomp/stompjs';
+import { Message, TypingState, ReadReceipt, ReadReceiptBatch, InboxDelta, InboxDeltaBatch, PresenceUpdate, SendMessageRequest } from '../types/chat';
 
 class WebSocketService {
   private client: Client | null = null;
@@ -14,6 +14,11 @@ class WebSocketService {
   private receivedMessageIds: Set<string> = new Set();
   private friendRequestHandlers: Map<string, (data: any) => void> = new Map();
   private callEventHandlers: Map<string, (data: any) => void> = new Map();
+  private resyncHandlers: Set<() => void> = new Set();
+  private resyncPending = false;
+  // Newest replay position seen per destination, presented on resubscribe so the server replays what was missed
+  private replayPositions: Map<string, string> = new Map();
+  private seenPositions: Map<string, Set<string>> = new Map();
 
   connect(userId: string, token?: string): Promise<void> {
     return new Promise((resolve, reject) => {
@@ -40,6 +45,10 @@ class WebSocketService {
             console.log('WebSocket connected:', frame);
             this.isConnected = true;
             this.reconnectAttempts = 0;
+            if (this.resyncPending) {
+              this.resyncPending = false;
+              this.resyncHandlers.forEach(handler => handler());
+            }
             // Add a small delay to ensure the connection is fully established
             setTimeout(() => {
               resolve();
@@ -55,8 +64,12 @@ class WebSocketService {
             this.isConnected = false;
             this.handleReconnect();
           },
-          onWebSocketClose: () => {
+          onWebSocketClose: (event) => {
             console.log('WebSocket connection closed');
+            // 4008: the server shed frames for this session, so state must be refetched once reconnected
+            if (event?.code === 4008) {
+              this.resyncPending = true;
+            }
             this.isConnected = false;
             this.handleReconnect();
           }
@@ -108,6 +121,9 @@ class WebSocketService {
 
     try {
       const subscription = this.client.subscribe(destination, (message) => {
+        if (!this.acceptReplayable(destination, message)) {
+          return;
+        }
         try {
           const data = JSON.parse(message.body);
 
@@ -124,7 +140,7 @@ class WebSocketService {
         } catch (error) {
           console.error('Error parsing message:', error);
         }
-      });
+      }, this.replayHeaders(destination));
 
       this.subscriptions.set(destination, subscription);
       this.messageHandlers.set(destination, callback);
@@ -206,7 +222,46 @@ class WebSocketService {
     }
   }
 
-  subscribeToTyping(conversationId: string, callback: (indicator: TypingIndicator) => void): void {
+  subscribeToInbox(callback: (delta: InboxDelta) => void): void {
+    if (!this.client) {
+      console.error('WebSocket client not initialized');
+      return;
+    }
+
+    if (!this.isConnected) {
+      console.error('WebSocket not connected, queuing subscription');
+      setTimeout(() => {
+        if (this.isConnected) {
+          this.subscribeToInbox(callback);
+        } else {
+          console.error('WebSocket still not connected after retry');
+        }
+      }, 100);
+      return;
+    }
+
+    const destination = `/user/queue/inbox`;
+    try {
+      this.client.subscribe(destination, (message) => {
+        if (!this.acceptReplayable(destination, message)) {
+          return;
+        }
+        try {
+          const data: InboxDeltaBatch = JSON.parse(message.body);
+          data.deltas.forEach(delta => callback(delta));
+        } catch (error) {
+          console.error('Error parsing inbox delta:', error);
+        }
+      }, this.replayHeaders(destination));
+
+      this.messageHandlers.set(destination, callback);
+      console.log(`Successfully subscribed to ${destination}`);
+    } catch (error) {
+      console.error(`Failed to subscribe to ${destination}:`, error);
+    }
+  }
+
+  subscribeToTyping(conversationId: string, callback: (state: TypingState) => void): void {
     if (!this.client) {
       console.error('WebSocket client not initialized');
       return;
@@ -277,8 +332,9 @@ class WebSocketService {
     try {
       const subscription = this.client.subscribe(destination, (message) => {
         try {
-          const data = JSON.parse(message.body);
-          callback(data);
+          // Receipts arrive aggregated, one frame per conversation per server flush
+          const data: ReadReceiptBatch = JSON.parse(message.body);
+          data.receipts.forEach(receipt => callback(receipt));
         } catch (error) {
           console.error('Error parsing read receipt:', error);
         }
@@ -491,6 +547,13 @@ class WebSocketService {
     }
   }
 
+  onResync(handler: () => void): () => void {
+    this.resyncHandlers.add(handler);
+    return () => {
+      this.resyncHandlers.delete(handler);
+    };
+  }
+
   getConnectionStatus(): boolean {
     return this.isConnected;
   }
@@ -521,7 +584,65 @@ class WebSocketService {
   private resubscribeAll(): void {
     console.log('Re-subscribing to all previous subscriptions...');
     this.subscriptions.clear();
+    // Kept ids would hide frames the server replays
     this.receivedMessageIds.clear();
+
+    const handlers = new Map(this.messageHandlers);
+    handlers.forEach((handler, destination) => {
+      const match = destination.match(/^\/topic\/conversation\/([^/]+)(\/(typing|read|presence))?$/);
+      if (match) {
+        const [, conversationId, , suffix] = match;
+        if (!suffix) {
+          this.subscribeToConversation(conversationId, handler);
+        } else if (suffix === 'typing') {
+          this.subscribeToTyping(conversationId, handler);
+        } else if (suffix === 'read') {
+          this.subscribeToReadReceipts(conversationId, handler);
+        } else {
+          this.subscribeToPresence(conversationId, handler);
+        }
+      } else if (destination === '/user/queue/inbox') {
+        this.subscribeToInbox(handler);
+      }
+    });
+  }
+
+  private replayHeaders(destination: string): Record<string, string> {
+    const position = this.replayPositions.get(destination);
+    return position ? { 'replay-from': position } : {};
+  }
+
+  // False for frames to skip: replays already seen, or the server's "too far behind" signal
+  private acceptReplayable(destination: string, frame: IMessage): boolean {
+    if (frame.headers['replay-resync']) {
+      this.replayPositions.delete(destination);
+      this.seenPositions.delete(destination);
+      this.resyncHandlers.forEach(handler => handler());
+      return false;
+    }
+    const position = frame.headers['replay-pos'];
+    if (!position) {
+      return true;
+    }
+    const seen = this.seenPositions.get(destination) ?? new Set<string>();
+    if (seen.has(position)) {
+      return false;
+    }
+    seen.add(position);
+    if (seen.size > 500) {
+      seen.delete(seen.values().next().value as string);
+    }
+    this.seenPositions.set(destination, seen);
+
+    // Positions are "{server epoch}-{buffer generation}:{n}"; a new prefix means a restarted server or a
+    // recreated buffer, so its position wins
+    const current = this.replayPositions.get(destination);
+    const [epoch, n] = position.split(':');
+    const [currentEpoch, currentN] = current ? current.split(':') : [undefined, undefined];
+    if (!current || epoch !== currentEpoch || Number(n) > Number(currentN)) {
+      this.replayPositions.set(destination, position);
+    }
+    return true;
   }
 
   // Wait for connection to be established
@@ -11,6 +11,7 @@ export interface User {
 export interface Message {
   id: string;
   conversationId: string;
+  seq?: number;
   senderId: string;
   senderUsername: string;
   senderDisplayName: string;
@@ -68,6 +69,18 @@ export interface ConversationMember {
   lastSeenAt?: string;
 }
 
+export interface InboxPage {
+  conversations: Conversation[];
+  nextCursor?: string;
+  hasMore: boolean;
+}
+
+export interface MessageSearchResult {
+  message: Message;
+  snippet: string;
+  rank: number;
+}
+
 export interface SendMessageRequest {
   conversationId: string;
   type: MessageType;
@@ -75,6 +88,7 @@ export interface SendMessageRequest {
   metadata?: any;
   replyToId?: string;
   attachments?: MessageAttachment[];
+  clientMessageId?: string;
 }
 
 export interface CreateConversationRequest {
@@ -103,9 +117,9 @@ export enum MemberRole {
   MEMBER = 'member'
 }
 
-export interface TypingIndicator {
-  userId: string;
-  isTyping: boolean;
+export interface TypingState {
+  conversationId: string;
+  userIds: string[];
   timestamp: number;
 }
 
@@ -115,6 +129,26 @@ export interface ReadReceipt {
   timestamp: number;
 }
 
+export interface ReadReceiptBatch {
+  conversationId: string;
+  receipts: ReadReceipt[];
+}
+
+export interface InboxDelta {
+  conversationId: string;
+  activityAt: string;
+  lastMessageId?: string;
+  lastSenderId?: string;
+  lastSenderDisplayName?: string;
+  lastMessagePreview?: string;
+  lastMessageAt?: string;
+  unreadCount: number;
+}
+
+export interface InboxDeltaBatch {
+  deltas: InboxDelta[];
+}
+
 export interface PresenceUpdate {
   userId: string;
   status: 'online' | 'offline';
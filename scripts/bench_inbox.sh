@@ -0,0 +1,93 @@
+export PGPASSWORD="1234567890"
+DB_NAME="chat_app"
+
+# Runs the inbox query for users with 10, 300 and 5,000 group conversations (5 members and
+# 20 messages each). Everything runs in a transaction that is rolled back, so the database is left unchanged.
+psql -U postgres -h localhost -p 5432 -d "$DB_NAME" <<'SQL'
+BEGIN;
+
+CREATE TEMP TABLE bench_users (id uuid, conversations int) ON COMMIT DROP;
+INSERT INTO bench_users VALUES
+    ('00000000-0000-0000-0000-00000000b010', 10),
+    ('00000000-0000-0000-0000-00000000b300', 300),
+    ('00000000-0000-0000-0000-0000000b5000', 5000);
+
+INSERT INTO users (id, username, display_name)
+SELECT id, 'bench_' || conversations, 'Bench ' || conversations FROM bench_users;
+INSERT INTO users (id, username, display_name)
+SELECT ('00000000-0000-0000-0001-' || lpad(g::text, 12, '0'))::uuid, 'bench_peer_' || g, 'Peer ' || g
+FROM generate_series(1, 4) g;
+
+CREATE TEMP TABLE bench_conversations ON COMMIT DROP AS
+SELECT gen_random_uuid() AS id, u.id AS owner_id, now() - (g || ' minutes')::interval AS updated_at
+FROM bench_users u, generate_series(1, u.conversations) g;
+
+INSERT INTO conversations (id, type, title, created_by, updated_at)
+SELECT id, 'group', 'bench', owner_id, updated_at FROM bench_conversations;
+
+INSERT INTO conversation_members (conversation_id, user_id, role)
+SELECT id, owner_id, 'owner' FROM bench_conversations;
+INSERT INTO conversation_members (conversation_id, user_id)
+SELECT c.id, ('00000000-0000-0000-0001-' || lpad(g::text, 12, '0'))::uuid
+FROM bench_conversations c, generate_series(1, 4) g;
+
+INSERT INTO messages (conversation_id, sender_id, type, content, created_at)
+SELECT c.id, c.owner_id, 'text', 'message ' || g, c.updated_at - (g || ' seconds')::interval
+FROM bench_conversations c, generate_series(1, 20) g;
+
+-- What LastMessageService maintains on send
+UPDATE conversations c
+SET (last_message_id, last_message_at, last_sender_id, last_message_preview) = (
+    SELECT m.id, m.created_at, m.sender_id, left(m.content, 120) FROM messages m
+    WHERE m.conversation_id = c.id ORDER BY m.created_at DESC, m.id DESC LIMIT 1)
+WHERE c.id IN (SELECT id FROM bench_conversations);
+
+ANALYZE conversations;
+ANALYZE conversation_members;
+ANALYZE messages;
+
+-- Keep in sync with InboxDAO.INBOX_SQL (first page, no cursor)
+PREPARE inbox(uuid, int) AS
+SELECT c.id, c.type, c.title, c.avatar_url, c.created_by, creator.username AS created_by_username,
+       c.created_at, c.updated_at, me.unread_count,
+       c.last_message_id, c.last_message_at, c.last_sender_id, c.last_message_preview,
+       sender.username AS last_sender_username, sender.display_name AS last_sender_display_name,
+       sender.avatar_url AS last_sender_avatar_url,
+       members.members
+FROM conversation_members me
+JOIN conversations c ON c.id = me.conversation_id
+LEFT JOIN users creator ON creator.id = c.created_by
+LEFT JOIN users sender ON sender.id = c.last_sender_id
+LEFT JOIN LATERAL (
+    SELECT json_agg(json_build_object(
+               'userId', u.id, 'username', u.username, 'displayName', u.display_name,
+               'avatarUrl', u.avatar_url, 'role', cm.role, 'joinedAt', cm.joined_at,
+               'mutedUntil', cm.muted_until, 'lastReadMessageId', cm.last_read_message_id,
+               'lastSeenAt', u.last_seen_at)
+           ORDER BY cm.joined_at) AS members
+    FROM conversation_members cm
+    JOIN users u ON u.id = cm.user_id
+    WHERE cm.conversation_id = c.id
+) members ON true
+WHERE me.user_id = $1
+  AND (c.type <> 'direct' OR EXISTS (
+      SELECT 1 FROM conversation_members peer
+      JOIN friendships f ON f.user1_id = LEAST(me.user_id, peer.user_id)
+                        AND f.user2_id = GREATEST(me.user_id, peer.user_id)
+      WHERE peer.conversation_id = c.id AND peer.user_id <> me.user_id))
+ORDER BY c.updated_at DESC, c.id DESC
+LIMIT $2;
+
+\echo '--- 10 conversations, first page of 30'
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE inbox('00000000-0000-0000-0000-00000000b010', 31);
+\echo '--- 300 conversations, first page of 30'
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE inbox('00000000-0000-0000-0000-00000000b300', 31);
+\echo '--- 300 conversations, everything (getUserConversations)'
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE inbox('00000000-0000-0000-0000-00000000b300', 2147483647);
+\echo '--- 5000 conversations, first page of 30'
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE inbox('00000000-0000-0000-0000-0000000b5000', 31);
+\echo '--- 5000 conversations, everything (getUserConversations)'
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE inbox('00000000-0000-0000-0000-0000000b5000', 2147483647);
+
+ROLLBACK;
+SQL
@@ -0,0 +1,43 @@
+export PGPASSWORD="1234567890"
+DB_NAME="chat_app"
+
+# Compares offset paging with keyset paging on one conversation with 1M messages.
+# Everything runs in a transaction that is rolled back, so the database is left unchanged.
+psql -U postgres -h localhost -p 5432 -d "$DB_NAME" <<'SQL'
+BEGIN;
+
+INSERT INTO conversations (id, type) VALUES ('00000000-0000-0000-0000-0000000be7c7', 'group');
+
+INSERT INTO messages (conversation_id, type, content, created_at)
+SELECT '00000000-0000-0000-0000-0000000be7c7', 'text', 'message ' || g,
+       now() - (g || ' seconds')::interval
+FROM generate_series(1, 1000000) g;
+
+ANALYZE messages;
+
+\echo '--- offset, page 1'
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM messages
+WHERE conversation_id = '00000000-0000-0000-0000-0000000be7c7' AND deleted_at IS NULL
+ORDER BY created_at DESC, id DESC LIMIT 51 OFFSET 0;
+
+\echo '--- offset, page 10000'
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM messages
+WHERE conversation_id = '00000000-0000-0000-0000-0000000be7c7' AND deleted_at IS NULL
+ORDER BY created_at DESC, id DESC LIMIT 51 OFFSET 499950;
+
+\echo '--- keyset, page 1'
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM messages
+WHERE conversation_id = '00000000-0000-0000-0000-0000000be7c7' AND deleted_at IS NULL
+ORDER BY created_at DESC, id DESC LIMIT 51;
+
+\echo '--- keyset, page 10000'
+SELECT created_at AS cursor_at, id AS cursor_id FROM messages
+WHERE conversation_id = '00000000-0000-0000-0000-0000000be7c7'
+ORDER BY created_at DESC, id DESC LIMIT 1 OFFSET 499949 \gset
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM messages
+WHERE conversation_id = '00000000-0000-0000-0000-0000000be7c7' AND deleted_at IS NULL
+  AND created_at <= :'cursor_at' AND (created_at < :'cursor_at' OR id < :'cursor_id')
+ORDER BY created_at DESC, id DESC LIMIT 51;
+
+ROLLBACK;
+SQL
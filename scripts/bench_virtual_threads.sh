@@ -0,0 +1,59 @@
+# Compares p99 latency of a JDBC-bound REST endpoint with and without virtual threads, at 2,000
+# concurrent requests. Starts the app once per mode on port 8090, drives it with `hey`
+# (https://github.com/rakyll/hey) and prints hey's latency distribution for each run.
+#
+# Needs a valid access token and a running Postgres:
+#   TOKEN=eyJ... sh scripts/bench_virtual_threads.sh
+# Optional: REQUESTS (default 40000), CONCURRENCY (default 2000), ENDPOINT (default /conversations/inbox),
+# DATASOURCE_POOL_SIZE (default 20).
+#
+# The virtual-thread run logs pinned carriers (-Djdk.tracePinnedThreads=short); the script prints how
+# many it saw. Any hit shows the stack of a synchronized block that blocked, which should become a lock.
+BACKEND_DIR="$(dirname "$0")/../backend"
+REQUESTS="${REQUESTS:-40000}"
+CONCURRENCY="${CONCURRENCY:-2000}"
+ENDPOINT="${ENDPOINT:-/conversations/inbox}"
+PORT=8090
+
+if [ -z "$TOKEN" ]; then
+    echo "TOKEN is required"
+    exit 1
+fi
+command -v hey > /dev/null || { echo "hey is required (go install github.com/rakyll/hey@latest)"; exit 1; }
+
+(cd "$BACKEND_DIR" && ./gradlew bootJar -q) || exit 1
+JAR=$(ls "$BACKEND_DIR"/build/libs/*.jar | grep -v plain | head -n 1)
+
+export DATASOURCE_URL="${DATASOURCE_URL:-jdbc:postgresql://localhost:5432/chat_app}"
+export DATASOURCE_USERNAME="${DATASOURCE_USERNAME:-postgres}"
+export DATASOURCE_PASSWORD="${DATASOURCE_PASSWORD:-1234567890}"
+export SERVER_SERVLET_CONTEXT_PATH="${SERVER_SERVLET_CONTEXT_PATH:-/api}"
+export SERVER_PORT=$PORT
+BASE_URL="http://localhost:$PORT$SERVER_SERVLET_CONTEXT_PATH"
+
+run_mode() {
+    MODE=$1
+    LOG="bench-$MODE.log"
+    VIRTUAL_THREADS_ENABLED=$([ "$MODE" = "virtual" ] && echo true || echo false) \
+        java -Djdk.tracePinnedThreads=short -jar "$JAR" \
+        --logging.level.ty.tran.demo=INFO --logging.level.org.springframework.security=INFO > "$LOG" 2>&1 &
+    APP=$!
+
+    until curl -s -o /dev/null -H "Authorization: Bearer $TOKEN" "$BASE_URL/actuator/health"; do
+        sleep 1
+        kill -0 $APP 2> /dev/null || { echo "$MODE: app exited, see $LOG"; return; }
+    done
+
+    # Warm up the JIT and the connection pool before measuring
+    hey -n 2000 -c 100 -H "Authorization: Bearer $TOKEN" "$BASE_URL$ENDPOINT" > /dev/null
+    echo "=== $MODE threads: $REQUESTS requests, $CONCURRENCY concurrent, GET $ENDPOINT ==="
+    hey -n "$REQUESTS" -c "$CONCURRENCY" -H "Authorization: Bearer $TOKEN" "$BASE_URL$ENDPOINT" \
+        | sed -n '/Summary/,/Status code distribution/p'
+    echo "pinned carrier events: $(grep -c 'onPinned\|pinned' "$LOG")"
+
+    kill $APP
+    wait $APP 2> /dev/null
+}
+
+run_mode platform
+run_mode virtual
@@ -0,0 +1,97 @@
+// Load test for the STOMP inbound channel. Opens CLIENTS connections as one user, has each send
+// MESSAGES messages to one conversation as fast as the server acknowledges them, and reports
+// throughput and send-to-echo latency (p50/p99) measured from the conversation topic.
+//
+// Run from the frontend directory so @stomp/stompjs and sockjs-client resolve:
+//   cd frontend && TOKEN=... CONVERSATION_ID=... node ../scripts/load_stomp_inbound.js
+//
+// To see the effect of blocking handlers, add database latency first (Linux, as root):
+//   tc qdisc add dev lo root netem delay 5ms      (remove with: tc qdisc del dev lo root)
+// then compare a run against the default (virtual threads) with one against a server started with
+//   --chat.stomp.inbound.virtual-threads=false
+// and watch chat.stomp.channel.wait / chat.stomp.channel.queued under /api/actuator/metrics.
+const { Client } = require('@stomp/stompjs');
+const SockJS = require('sockjs-client');
+
+const URL = process.env.URL || 'http://localhost:8080/api/ws';
+const TOKEN = process.env.TOKEN;
+const CONVERSATION_ID = process.env.CONVERSATION_ID;
+const CLIENTS = parseInt(process.env.CLIENTS || '200', 10);
+const MESSAGES = parseInt(process.env.MESSAGES || '50', 10);
+
+if (!TOKEN || !CONVERSATION_ID) {
+  console.error('TOKEN and CONVERSATION_ID are required');
+  process.exit(1);
+}
+
+const sentAt = new Map();
+const latencies = [];
+const expected = CLIENTS * MESSAGES;
+let started;
+
+function connect(index) {
+  return new Promise((resolve, reject) => {
+    const client = new Client({
+      webSocketFactory: () => new SockJS(URL),
+      connectHeaders: { Authorization: `Bearer ${TOKEN}` },
+      reconnectDelay: 0,
+      onConnect: () => resolve(client),
+      onStompError: (frame) => reject(new Error(`client ${index}: ${frame.headers.message}`)),
+    });
+    client.activate();
+  });
+}
+
+function percentile(sorted, p) {
+  return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+}
+
+function report() {
+  const seconds = (Date.now() - started) / 1000;
+  latencies.sort((a, b) => a - b);
+  console.log(`received ${latencies.length}/${expected} in ${seconds.toFixed(1)}s ` +
+    `(${(latencies.length / seconds).toFixed(0)} msg/s)`);
+  if (latencies.length > 0) {
+    console.log(`latency ms p50=${percentile(latencies, 0.5)} p99=${percentile(latencies, 0.99)} ` +
+      `max=${latencies[latencies.length - 1]}`);
+  }
+  process.exit(0);
+}
+
+async function run() {
+  const clients = await Promise.all(Array.from({ length: CLIENTS }, (_, i) => connect(i)));
+  console.log(`${clients.length} clients connected`);
+
+  // One subscriber is enough to time every echo
+  clients[0].subscribe(`/topic/conversation/${CONVERSATION_ID}`, (frame) => {
+    const message = JSON.parse(frame.body);
+    const at = sentAt.get(message.content);
+    if (at !== undefined) {
+      latencies.push(Date.now() - at);
+      sentAt.delete(message.content);
+      if (latencies.length === expected) {
+        report();
+      }
+    }
+  });
+
+  started = Date.now();
+  clients.forEach((client, c) => {
+    for (let m = 0; m < MESSAGES; m++) {
+      const clientMessageId = `load-${c}-${m}-${started}`;
+      // Echoes carry the content, not the client id, so the content doubles as the key
+      sentAt.set(clientMessageId, Date.now());
+      client.publish({
+        destination: `/app/conversation/${CONVERSATION_ID}/send`,
+        body: JSON.stringify({ conversationId: CONVERSATION_ID, type: 'text', content: clientMessageId, clientMessageId }),
+      });
+    }
+  });
+
+  setTimeout(report, parseInt(process.env.TIMEOUT_MS || '60000', 10));
+}
+
+run().catch((e) => {
+  console.error(e.message);
+  process.exit(1);
+});
@@ -0,0 +1,23 @@
+# Starts two app instances against the same local Postgres with the cluster bus enabled,
+# on ports 8080 and 8081. Connect one client to each port: messages, typing, presence and
+# inbox updates sent on one node reach subscribers of the other. Ctrl+C stops both.
+BACKEND_DIR="$(dirname "$0")/../backend"
+
+(cd "$BACKEND_DIR" && ./gradlew bootJar -q) || exit 1
+JAR=$(ls "$BACKEND_DIR"/build/libs/*.jar | grep -v plain | head -n 1)
+
+export DATASOURCE_URL="${DATASOURCE_URL:-jdbc:postgresql://localhost:5432/chat_app}"
+export DATASOURCE_USERNAME="${DATASOURCE_USERNAME:-postgres}"
+export DATASOURCE_PASSWORD="${DATASOURCE_PASSWORD:-1234567890}"
+export SERVER_SERVLET_CONTEXT_PATH="${SERVER_SERVLET_CONTEXT_PATH:-/api}"
+
+SERVER_PORT=8080 java -jar "$JAR" --chat.cluster.enabled=true > node-8080.log 2>&1 &
+NODE_A=$!
+SERVER_PORT=8081 java -jar "$JAR" --chat.cluster.enabled=true > node-8081.log 2>&1 &
+NODE_B=$!
+trap 'kill $NODE_A $NODE_B' INT TERM
+
+echo "Node A: http://localhost:8080 (pid $NODE_A, log node-8080.log)"
+echo "Node B: http://localhost:8081 (pid $NODE_B, log node-8081.log)"
+echo "Check fan-out with: curl -s localhost:8080/api/actuator/metrics/chat.cluster.received"
+wait